@@ -0,0 +1,97 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.cloud.language.v1.LanguageServiceClient;
+import com.google.cloud.language.v1.LanguageServiceSettings;
+import com.google.cloud.translate.Translate;
+import com.google.cloud.translate.TranslateOptions;
+import com.google.sps.translation.CloudTranslator;
+import java.io.IOException;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Holds the Cloud API clients shared by every request, so that channels and credentials are set up
+ * once per instance rather than once per call. Clients are created on first use and closed when the
+ * web app shuts down.
+ */
+@WebListener
+public class ClientRegistry implements ServletContextListener {
+  private static LanguageServiceClient languageServiceClient;
+  // Null to use the default endpoint and credentials.
+  private static LanguageServiceSettings languageServiceSettings;
+  private static Translate translateService;
+  private static CloudTranslator translator;
+
+  /** Returns the shared Natural Language client, creating it if needed. */
+  public static synchronized LanguageServiceClient getLanguageServiceClient() throws IOException {
+    if (languageServiceClient == null || languageServiceClient.isShutdown()) {
+      languageServiceClient = languageServiceSettings == null
+          ? LanguageServiceClient.create()
+          : LanguageServiceClient.create(languageServiceSettings);
+    }
+    return languageServiceClient;
+  }
+
+  /**
+   * Makes the shared Natural Language client connect with {@code settings}, e.g. to a local
+   * stand-in for tests, or with the defaults again if it is null.
+   */
+  static synchronized void setLanguageServiceSettings(LanguageServiceSettings settings) {
+    closeLanguageServiceClient();
+    languageServiceSettings = settings;
+  }
+
+  /** Returns the shared Translation service, creating it if needed. */
+  public static synchronized Translate getTranslateService() {
+    if (translateService == null) {
+      translateService = TranslateOptions.getDefaultInstance().getService();
+    }
+    return translateService;
+  }
+
+  /**
+   * Returns the shared translator, creating it if needed. Sharing it lets /metrics report the
+   * latency of every translation request this instance sent.
+   */
+  public static synchronized CloudTranslator getTranslator() {
+    if (translator == null) {
+      translator = new CloudTranslator(getTranslateService());
+    }
+    return translator;
+  }
+
+  private static synchronized void closeLanguageServiceClient() {
+    if (languageServiceClient != null) {
+      languageServiceClient.close();
+      languageServiceClient = null;
+    }
+  }
+
+  @Override
+  public void contextInitialized(ServletContextEvent event) {}
+
+  @Override
+  public void contextDestroyed(ServletContextEvent event) {
+    synchronized (ClientRegistry.class) {
+      closeLanguageServiceClient();
+      // The Translate service holds no resources of its own that need closing.
+      translateService = null;
+      translator = null;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.PropertyProjection;
+import com.google.appengine.api.datastore.Query;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for queries that only need part of each entity: keys-only queries, which read no entity
+ * data at all, and projection queries, which read the listed properties straight from an index.
+ *
+ * <p>Projecting more than one property needs a composite index declared in
+ * WEB-INF/datastore-indexes.xml, and skips entities that lack an indexed value for any of them.
+ */
+public final class DatastoreQueries {
+  /** The most keys a single Datastore batch call accepts. */
+  public static final int MAX_BATCH_SIZE = 500;
+
+  private DatastoreQueries() {}
+
+  /** Returns the keys of the entities matched by {@code query}, reading no entity data. */
+  public static List<Key> getKeys(Query query) {
+    return getKeys(query, FetchOptions.Builder.withDefaults());
+  }
+
+  /** Returns the keys of the entities matched by {@code query} within {@code fetchOptions}. */
+  public static List<Key> getKeys(Query query, FetchOptions fetchOptions) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    List<Key> keys = new ArrayList<>();
+    for (Entity entity : datastore.prepare(query.setKeysOnly()).asIterable(fetchOptions)) {
+      keys.add(entity.getKey());
+    }
+    return keys;
+  }
+
+  /**
+   * Returns the entities matched by {@code query} with only the projected properties filled in. The
+   * entities still carry their keys.
+   */
+  public static List<Entity> getProjection(Query query, PropertyProjection... projections) {
+    return getProjection(query, FetchOptions.Builder.withDefaults(), projections);
+  }
+
+  /**
+   * Returns the entities matched by {@code query} within {@code fetchOptions}, with only the projected
+   * properties filled in.
+   */
+  public static List<Entity> getProjection(
+      Query query, FetchOptions fetchOptions, PropertyProjection... projections) {
+    for (PropertyProjection projection : projections) {
+      query.addProjection(projection);
+    }
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    return datastore.prepare(query).asList(fetchOptions);
+  }
+
+  /**
+   * Deletes every entity matched by {@code query}, MAX_BATCH_SIZE keys per delete call. Returns the
+   * number of entities deleted.
+   */
+  public static int deleteAll(Query query) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    List<Key> keys = getKeys(query);
+    for (int start = 0; start < keys.size(); start += MAX_BATCH_SIZE) {
+      datastore.delete(keys.subList(start, Math.min(start + MAX_BATCH_SIZE, keys.size())));
+    }
+    return keys.size();
+  }
+}
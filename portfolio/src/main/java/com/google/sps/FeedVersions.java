@@ -0,0 +1,149 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheService.SetPolicy;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Keeps a version stamp per kind in Memcache, shared by all instances, and uses it as the ETag of the
+ * feeds built from that kind. Every write to a kind bumps its version, so a client that sends back
+ * the current ETag in If-None-Match can be answered with 304 without reading Datastore.
+ *
+ * <p>Queries for a kind's feed are eventually consistent, so a response built right after a write
+ * may not show it yet. A version is therefore only handed out as an ETag once SETTLE_MILLIS have
+ * passed since its bump; until then responses go out without one and are fetched again in full.
+ *
+ * <p>If the stamp is evicted, it restarts from the current time, so old ETags stop matching instead
+ * of matching a version they weren't issued for.
+ */
+public final class FeedVersions {
+  /** Version of the comments, including everything derived from them: moods, sentiment, nicknames. */
+  public static final String COMMENTS = "Comment";
+  /** Version of the map markers. */
+  public static final String MARKERS = "Marker";
+
+  /** How long after a bump the new version is left out of responses, so that queries reflect it. */
+  public static final long SETTLE_MILLIS = 2000;
+
+  static final String MEMCACHE_NAMESPACE = "feedVersion";
+  // Suffix of the key holding the time of a kind's last bump.
+  static final String BUMPED_SUFFIX = "-bumped";
+
+  private static final AtomicLong checkedRequests = new AtomicLong();
+  private static final AtomicLong notModifiedResponses = new AtomicLong();
+
+  private FeedVersions() {}
+
+  /** Marks everything served from {@code kind} as changed. Call it after the write has committed. */
+  public static void bump(String kind) {
+    MemcacheService memcache = MemcacheServiceFactory.getMemcacheService(MEMCACHE_NAMESPACE);
+    // The time goes in first, so that a reader who sees the new version also sees it as unsettled.
+    memcache.put(kind + BUMPED_SUFFIX, System.currentTimeMillis());
+    memcache.increment(kind, 1, System.currentTimeMillis());
+  }
+
+  /** Returns the current version of {@code kind}. */
+  public static long getVersion(String kind) {
+    MemcacheService memcache = MemcacheServiceFactory.getMemcacheService(MEMCACHE_NAMESPACE);
+    Long version = (Long) memcache.get(kind);
+    if (version != null) {
+      return version;
+    }
+
+    // Another instance may start the stamp at the same time; whichever add wins is the version.
+    long initialVersion = System.currentTimeMillis();
+    memcache.put(kind, initialVersion, null, SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+    version = (Long) memcache.get(kind);
+    return version != null ? version : initialVersion;
+  }
+
+  /**
+   * Returns the current version of {@code kind}, or null if it was bumped less than SETTLE_MILLIS
+   * ago and queries may not reflect it yet.
+   */
+  public static Long getSettledVersion(String kind) {
+    // Read the version before the bump time, the reverse of the order bump writes them in.
+    long version = getVersion(kind);
+    MemcacheService memcache = MemcacheServiceFactory.getMemcacheService(MEMCACHE_NAMESPACE);
+    long now = System.currentTimeMillis();
+    Long bumpedMillis = (Long) memcache.get(kind + BUMPED_SUFFIX);
+    if (bumpedMillis == null) {
+      // The time of the last bump was evicted or never set, so wait a full settle time from now.
+      memcache.put(kind + BUMPED_SUFFIX, now, null, SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+      return null;
+    }
+    return now - bumpedMillis < SETTLE_MILLIS ? null : version;
+  }
+
+  /**
+   * Sets the ETag of a response served from {@code kind} and, if the request already has that
+   * version, sends 304 Not Modified. Returns true if the response was sent and nothing else should
+   * be written. A version that hasn't settled yet is not sent, and never matches.
+   *
+   * <p>Call it before reading Datastore: a write that lands while the response is being built then
+   * leaves the client with an older ETag, and the next request fetches the change.
+   */
+  public static boolean checkNotModified(
+      String kind, HttpServletRequest request, HttpServletResponse response) {
+    checkedRequests.incrementAndGet();
+    // Let browsers keep the response, but have them revalidate it on every use.
+    response.setHeader("Cache-Control", "no-cache");
+    Long version = getSettledVersion(kind);
+    if (version == null) {
+      return false;
+    }
+    String etag = "\"" + kind + "-" + version + "\"";
+    response.setHeader("ETag", etag);
+
+    String ifNoneMatch = request.getHeader("If-None-Match");
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      candidate = candidate.trim();
+      // Front ends that compress the response weaken its ETag, so compare weakly.
+      if (candidate.startsWith("W/")) {
+        candidate = candidate.substring(2);
+      }
+      if (candidate.equals(etag) || candidate.equals("*")) {
+        notModifiedResponses.incrementAndGet();
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the number of feed requests this instance has checked. */
+  public static long getCheckedRequests() {
+    return checkedRequests.get();
+  }
+
+  /** Returns the number of those requests that were answered with 304. */
+  public static long getNotModifiedResponses() {
+    return notModifiedResponses.get();
+  }
+
+  /** Returns the fraction of checked requests answered with 304, or 0 before the first request. */
+  public static double getHitRatio() {
+    long requests = checkedRequests.get();
+    return requests == 0 ? 0 : (double) notModifiedResponses.get() / requests;
+  }
+}
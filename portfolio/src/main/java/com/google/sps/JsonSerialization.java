@@ -0,0 +1,153 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.sps.data.Comment;
+import com.google.sps.data.Marker;
+import java.io.IOException;
+
+/**
+ * Holds the one {@code Gson} instance shared by the servlets. {@code Comment} and {@code Marker},
+ * which are written for every element of the comment feed and the map, use hand-written adapters
+ * instead of reflection. Their output matches what reflection would produce, null fields left out.
+ */
+public final class JsonSerialization {
+  public static final Gson GSON =
+      new GsonBuilder()
+          .registerTypeAdapter(Comment.class, new CommentAdapter().nullSafe())
+          .registerTypeAdapter(Marker.class, new MarkerAdapter().nullSafe())
+          .create();
+
+  private JsonSerialization() {}
+
+  /** Converts a {@code Comment} to and from JSON with the field names script-comments.js reads. */
+  static final class CommentAdapter extends TypeAdapter<Comment> {
+    @Override
+    public void write(JsonWriter out, Comment comment) throws IOException {
+      out.beginObject();
+      out.name("id").value(comment.getId());
+      writeIfPresent(out, "userId", comment.getUserId());
+      writeIfPresent(out, "mood", comment.getMood());
+      writeIfPresent(out, "content", comment.getContent());
+      writeIfPresent(out, "blobKeyString", comment.getBlobKeyString());
+      if (comment.getSentiment() != null) {
+        out.name("sentiment").value(comment.getSentiment());
+      }
+      out.name("timestamp").value(comment.getTimestamp());
+      writeIfPresent(out, "nickname", comment.getNickname());
+      out.endObject();
+    }
+
+    @Override
+    public Comment read(JsonReader in) throws IOException {
+      long id = 0;
+      String userId = null;
+      String mood = null;
+      String content = null;
+      String blobKeyString = null;
+      Float sentiment = null;
+      long timestamp = 0;
+      String nickname = null;
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        // Fields left out when null may also be sent as an explicit null.
+        if (in.peek() == JsonToken.NULL) {
+          in.nextNull();
+          continue;
+        }
+        switch (name) {
+          case "id":
+            id = in.nextLong();
+            break;
+          case "userId":
+            userId = in.nextString();
+            break;
+          case "mood":
+            mood = in.nextString();
+            break;
+          case "content":
+            content = in.nextString();
+            break;
+          case "blobKeyString":
+            blobKeyString = in.nextString();
+            break;
+          case "sentiment":
+            sentiment = (float) in.nextDouble();
+            break;
+          case "timestamp":
+            timestamp = in.nextLong();
+            break;
+          case "nickname":
+            nickname = in.nextString();
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return new Comment(id, userId, mood, content, blobKeyString, sentiment, timestamp, nickname);
+    }
+  }
+
+  /** Converts a {@code Marker} to and from {"lat": ..., "lng": ..., "content": ...}. */
+  static final class MarkerAdapter extends TypeAdapter<Marker> {
+    @Override
+    public void write(JsonWriter out, Marker marker) throws IOException {
+      out.beginObject();
+      out.name("lat").value(marker.getLat());
+      out.name("lng").value(marker.getLng());
+      writeIfPresent(out, "content", marker.getContent());
+      out.endObject();
+    }
+
+    @Override
+    public Marker read(JsonReader in) throws IOException {
+      double lat = 0;
+      double lng = 0;
+      String content = null;
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "lat":
+            lat = in.nextDouble();
+            break;
+          case "lng":
+            lng = in.nextDouble();
+            break;
+          case "content":
+            content = in.nextString();
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return new Marker(lat, lng, content);
+    }
+  }
+
+  private static void writeIfPresent(JsonWriter out, String name, String value) throws IOException {
+    if (value != null) {
+      out.name(name).value(value);
+    }
+  }
+}
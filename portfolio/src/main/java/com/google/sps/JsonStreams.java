@@ -0,0 +1,57 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.function.Function;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Writes JSON straight to a response as the data is produced, e.g. while a Datastore query is being
+ * iterated, instead of building the whole list and then the whole JSON string in memory first.
+ */
+public final class JsonStreams {
+  // Flush every so often so the client starts receiving data before the last element is written.
+  private static final int ELEMENTS_PER_FLUSH = 100;
+
+  private static final Gson gson = JsonSerialization.GSON;
+
+  private JsonStreams() {}
+
+  /** Returns a JsonWriter on the response's writer that leaves out null fields, like Gson does. */
+  public static JsonWriter newWriter(HttpServletResponse response) throws IOException {
+    return gson.newJsonWriter(response.getWriter());
+  }
+
+  /**
+   * Writes a JSON array with one element for each of {@code sources}, converted by {@code toElement}
+   * and serialized with Gson as soon as it is produced.
+   */
+  public static <S> void writeArray(JsonWriter writer, Iterable<S> sources,
+      Function<? super S, ?> toElement) throws IOException {
+    writer.beginArray();
+    int count = 0;
+    for (S source : sources) {
+      Object element = toElement.apply(source);
+      gson.toJson(element, element.getClass(), writer);
+      if (++count % ELEMENTS_PER_FLUSH == 0) {
+        writer.flush();
+      }
+    }
+    writer.endArray();
+  }
+}
@@ -21,10 +21,11 @@ public final class Comment {
   private final String mood;
   private final String content;
   private final String blobKeyString;
-  private final float sentiment;
+  private final Float sentiment;  // null while the sentiment is still being scored.
   private final long timestamp;
+  private final String nickname;  // null unless the display name was requested with the comment.
 
-  public Comment(long id, String userId, String mood, String content, String blobKeyString, float sentiment, long timestamp) {
+  public Comment(long id, String userId, String mood, String content, String blobKeyString, Float sentiment, long timestamp, String nickname) {
     this.id = id;
     this.userId = userId;
     this.mood = mood;
@@ -32,5 +33,38 @@ public final class Comment {
     this.blobKeyString = blobKeyString;
     this.sentiment = sentiment;
     this.timestamp = timestamp;
+    this.nickname = nickname;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public String getUserId() {
+    return userId;
+  }
+
+  public String getMood() {
+    return mood;
+  }
+
+  public String getContent() {
+    return content;
+  }
+
+  public String getBlobKeyString() {
+    return blobKeyString;
+  }
+
+  public Float getSentiment() {
+    return sentiment;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public String getNickname() {
+    return nickname;
   }
 }
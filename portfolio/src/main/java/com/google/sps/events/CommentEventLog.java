@@ -0,0 +1,146 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.events;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.SortDirection;
+import com.google.appengine.api.datastore.Text;
+import com.google.sps.DatastoreQueries;
+import com.google.sps.JsonSerialization;
+import com.google.sps.data.Comment;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records comments being created and deleted, so that open pages can apply the changes instead of
+ * fetching the whole list again.
+ *
+ * <p>Events are root "CommentEvent" entities ordered by their timestamp property, so that writers
+ * don't contend on one entity group. Queries on them are eventually consistent, so readers only
+ * see events older than SETTLE_MILLIS, by which time they are visible. Events are kept for
+ * RETENTION_MILLIS only; a reader that falls further behind has to reload the comments.
+ *
+ * <p>Recording is best effort: the comment change has already committed, so a failure is logged
+ * and open pages only pick up the change when they next reload.
+ */
+public final class CommentEventLog {
+  /** Event type of a new comment; the data is the comment as JSON. */
+  public static final String CREATED = "created";
+  /** Event type of a deleted comment; the data is {"id": ...}. */
+  public static final String DELETED = "deleted";
+  /** Event type telling readers to reload every comment, e.g. after all of them were deleted. */
+  public static final String RESET = "reset";
+
+  public static final long RETENTION_MILLIS = 10 * 60 * 1000;
+  /** How long after being recorded an event is read, so that queries are sure to find it. */
+  public static final long SETTLE_MILLIS = 2000;
+
+  private static final Logger logger = Logger.getLogger(CommentEventLog.class.getName());
+
+  private static final String EVENT_KIND = "CommentEvent";
+  private static final String TYPE = "type";
+  private static final String DATA = "data";
+  private static final String TIMESTAMP = "timestamp";
+
+  private CommentEventLog() {}
+
+  /** Records that {@code comment} was created. */
+  public static void recordCreated(Comment comment) {
+    record(CREATED, JsonSerialization.GSON.toJson(comment));
+  }
+
+  /** Records that the comment with the given id was deleted. */
+  public static void recordDeleted(long commentId) {
+    record(DELETED, "{\"id\": " + commentId + "}");
+  }
+
+  /** Records that readers should reload every comment. */
+  public static void recordReset() {
+    record(RESET, "{}");
+  }
+
+  /**
+   * Returns the events recorded from {@code sinceMillis} to {@code untilMillis}, inclusive, oldest
+   * first, but at most {@code limit} of them.
+   */
+  public static List<Entity> getEvents(long sinceMillis, long untilMillis, int limit) {
+    Query query =
+        new Query(EVENT_KIND)
+            .setFilter(Query.CompositeFilterOperator.and(
+                new Query.FilterPredicate(
+                    TIMESTAMP, Query.FilterOperator.GREATER_THAN_OR_EQUAL, sinceMillis),
+                new Query.FilterPredicate(
+                    TIMESTAMP, Query.FilterOperator.LESS_THAN_OR_EQUAL, untilMillis)))
+            .addSort(TIMESTAMP, SortDirection.ASCENDING);
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    return datastore.prepare(query).asList(FetchOptions.Builder.withLimit(limit));
+  }
+
+  /**
+   * Returns the time of the newest event recorded at or before {@code untilMillis}, or null if
+   * there is none.
+   */
+  public static Long getNewestEventMillis(long untilMillis) {
+    Query query =
+        new Query(EVENT_KIND)
+            .setFilter(new Query.FilterPredicate(
+                TIMESTAMP, Query.FilterOperator.LESS_THAN_OR_EQUAL, untilMillis))
+            .addSort(TIMESTAMP, SortDirection.DESCENDING);
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    List<Entity> events = datastore.prepare(query).asList(FetchOptions.Builder.withLimit(1));
+    return events.isEmpty() ? null : getTimestamp(events.get(0));
+  }
+
+  /** Returns the type of an event read with getEvents. */
+  public static String getType(Entity event) {
+    return (String) event.getProperty(TYPE);
+  }
+
+  /** Returns the JSON data of an event read with getEvents. */
+  public static String getData(Entity event) {
+    return ((Text) event.getProperty(DATA)).getValue();
+  }
+
+  /** Returns the time in milliseconds at which an event read with getEvents was recorded. */
+  public static long getTimestamp(Entity event) {
+    return (long) event.getProperty(TIMESTAMP);
+  }
+
+  /** Stores a new event and drops the events that have outlived RETENTION_MILLIS. */
+  private static void record(String type, String data) {
+    long now = System.currentTimeMillis();
+    Entity event = new Entity(EVENT_KIND);
+    event.setUnindexedProperty(TYPE, type);
+    event.setUnindexedProperty(DATA, new Text(data));
+    event.setProperty(TIMESTAMP, now);
+
+    try {
+      DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+      datastore.put(event);
+
+      DatastoreQueries.deleteAll(
+          new Query(EVENT_KIND)
+              .setFilter(new Query.FilterPredicate(
+                  TIMESTAMP, Query.FilterOperator.LESS_THAN, now - RETENTION_MILLIS)));
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Failed to record a " + type + " comment event.", e);
+    }
+  }
+}
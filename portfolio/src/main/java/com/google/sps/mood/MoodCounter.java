@@ -0,0 +1,189 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.mood;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.PropertyProjection;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+import com.google.sps.DatastoreQueries;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Keeps the number of comments per mood in sharded counter entities, so that the counts can be read
+ * without scanning every comment.
+ *
+ * <p>Each mood has up to SHARD_COUNT "MoodCountShard" entities whose counts add up to the number of
+ * comments with that mood. Comments are inserted and deleted through this class so that the comment
+ * and one shard are written in the same cross-group transaction. Comments without a mood, whether
+ * the property is null or missing, aren't counted.
+ */
+public final class MoodCounter {
+  private static final String SHARD_KIND = "MoodCountShard";
+  private static final String MOOD = "mood";
+  private static final String COUNT = "count";
+  private static final int SHARD_COUNT = 8;
+  private static final int MAX_TRANSACTION_ATTEMPTS = 3;
+
+  private static final Random random = new Random();
+
+  private MoodCounter() {}
+
+  /** Stores a new comment entity and counts its mood. */
+  public static void putComment(Entity commentEntity) {
+    String mood = (String) commentEntity.getProperty(MOOD);
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+
+    for (int attempt = 1; ; attempt++) {
+      Transaction transaction = datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+      try {
+        datastore.put(transaction, commentEntity);
+        if (mood != null) {
+          addToCount(datastore, transaction, mood, 1);
+        }
+        transaction.commit();
+        return;
+      } catch (ConcurrentModificationException e) {
+        if (attempt == MAX_TRANSACTION_ATTEMPTS) {
+          throw e;
+        }
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+  }
+
+  /**
+   * Deletes the comment with the given key and uncounts its mood. Returns the deleted comment entity,
+   * or null if it did not exist.
+   */
+  public static Entity deleteComment(Key commentKey) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+
+    for (int attempt = 1; ; attempt++) {
+      Transaction transaction = datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+      try {
+        Entity commentEntity = datastore.get(transaction, commentKey);
+        datastore.delete(transaction, commentKey);
+        String mood = (String) commentEntity.getProperty(MOOD);
+        if (mood != null) {
+          addToCount(datastore, transaction, mood, -1);
+        }
+        transaction.commit();
+        return commentEntity;
+      } catch (EntityNotFoundException e) {
+        // Already deleted, so there is nothing to uncount.
+        return null;
+      } catch (ConcurrentModificationException e) {
+        if (attempt == MAX_TRANSACTION_ATTEMPTS) {
+          throw e;
+        }
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+  }
+
+  /** Returns the number of comments per mood, leaving out moods without comments. */
+  public static Map<String, Long> getCounts() {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Map<String, Long> moodCounts = new HashMap<>();
+    for (Entity shard : datastore.prepare(new Query(SHARD_KIND)).asIterable()) {
+      moodCounts.merge((String) shard.getProperty(MOOD), (long) shard.getProperty(COUNT), Long::sum);
+    }
+    moodCounts.values().removeIf(count -> count == 0);
+    return moodCounts;
+  }
+
+  /** Deletes every counter shard, which sets all counts to zero. */
+  public static void reset() {
+    DatastoreQueries.deleteAll(new Query(SHARD_KIND));
+  }
+
+  /**
+   * Recounts the moods of all existing comments and replaces the counter shards with the result.
+   * Comments posted or deleted while this runs may be miscounted, so run it when the app is idle.
+   *
+   * <p>The new counts are written before the stale shards are deleted, so that a failure part way
+   * leaves counts that are too high rather than missing.
+   */
+  public static Map<String, Long> rebuild() {
+    // Only the mood of each comment is needed, so read it from the index rather than the entities.
+    Map<String, Long> moodCounts = new HashMap<>();
+    Iterable<Entity> commentEntities =
+        DatastoreQueries.getProjection(new Query("Comment"), new PropertyProjection(MOOD, String.class));
+    for (Entity commentEntity : commentEntities) {
+      // The projection leaves out comments without the property, but not those where it is null.
+      String mood = (String) commentEntity.getProperty(MOOD);
+      if (mood != null) {
+        moodCounts.merge(mood, 1L, Long::sum);
+      }
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    List<Entity> shards = new ArrayList<>();
+    Set<Key> shardKeys = new HashSet<>();
+    for (Map.Entry<String, Long> moodCount : moodCounts.entrySet()) {
+      Entity shard = new Entity(getShardKey(moodCount.getKey(), 0));
+      shard.setProperty(MOOD, moodCount.getKey());
+      shard.setProperty(COUNT, moodCount.getValue());
+      shards.add(shard);
+      shardKeys.add(shard.getKey());
+    }
+    datastore.put(shards);
+
+    List<Key> staleShardKeys = DatastoreQueries.getKeys(new Query(SHARD_KIND));
+    staleShardKeys.removeAll(shardKeys);
+    datastore.delete(staleShardKeys);
+    return moodCounts;
+  }
+
+  /** Adds {@code delta} to a randomly chosen shard of the mood's counter. */
+  private static void addToCount(
+      DatastoreService datastore, Transaction transaction, String mood, long delta) {
+    Key shardKey = getShardKey(mood, random.nextInt(SHARD_COUNT));
+    Entity shard;
+    try {
+      shard = datastore.get(transaction, shardKey);
+    } catch (EntityNotFoundException e) {
+      shard = new Entity(shardKey);
+      shard.setProperty(MOOD, mood);
+      shard.setProperty(COUNT, 0L);
+    }
+    shard.setProperty(COUNT, (long) shard.getProperty(COUNT) + delta);
+    datastore.put(transaction, shard);
+  }
+
+  private static Key getShardKey(String mood, int shardIndex) {
+    return KeyFactory.createKey(SHARD_KIND, mood + "#" + shardIndex);
+  }
+}
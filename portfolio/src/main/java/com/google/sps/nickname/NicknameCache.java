@@ -0,0 +1,155 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.nickname;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.sps.FeedVersions;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads and writes user nicknames through Memcache. "UserInfo" entities are keyed by user id, so
+ * cache misses are answered with a get by key rather than a query. Writes go to Datastore and
+ * Memcache together. Users without a nickname are cached for a short time only, so that a nickname
+ * set on another instance shows up soon even if that instance's write to Memcache failed.
+ */
+public final class NicknameCache {
+  public static final String ANONYMOUS = "Anonymous";
+
+  private static final String USER_INFO_KIND = "UserInfo";
+  private static final String USERID = "userId";
+  private static final String NICKNAME = "nickname";
+  private static final String MEMCACHE_NAMESPACE = "nickname";
+  // Cached in place of a nickname for users who haven't set one.
+  private static final Boolean NO_NICKNAME = Boolean.FALSE;
+  private static final int NO_NICKNAME_EXPIRATION_SECONDS = 60;
+
+  private NicknameCache() {}
+
+  /**
+   * Returns the nickname of the user with the specified id, or "Anonymous" if no nickname is set or
+   * the id is missing or empty.
+   */
+  public static String getNickname(String userId) {
+    if (userId == null || userId.isEmpty()) {
+      return ANONYMOUS;
+    }
+
+    MemcacheService memcache = MemcacheServiceFactory.getMemcacheService(MEMCACHE_NAMESPACE);
+    Object cached = memcache.get(userId);
+    if (cached instanceof String) {
+      return (String) cached;
+    }
+    if (NO_NICKNAME.equals(cached)) {
+      return ANONYMOUS;
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    try {
+      Entity entity = datastore.get(KeyFactory.createKey(USER_INFO_KIND, userId));
+      String nickname = (String) entity.getProperty(NICKNAME);
+      memcache.put(userId, nickname);
+      return nickname;
+    } catch (EntityNotFoundException e) {
+      memcache.put(userId, NO_NICKNAME, Expiration.byDeltaSeconds(NO_NICKNAME_EXPIRATION_SECONDS));
+      return ANONYMOUS;
+    }
+  }
+
+  /**
+   * Returns the nicknames of the users with the specified ids, keyed by user id, with "Anonymous" for
+   * users without a nickname. Users missing from Memcache are read with a single batch get. An empty
+   * id is "Anonymous" too, since no user can have it.
+   */
+  public static Map<String, String> getNicknames(Collection<String> userIds) {
+    Set<String> uniqueUserIds = new HashSet<>(userIds);
+    uniqueUserIds.remove(null);
+
+    Map<String, String> nicknames = new HashMap<>();
+    // An empty key name is invalid in both Memcache and Datastore.
+    if (uniqueUserIds.remove("")) {
+      nicknames.put("", ANONYMOUS);
+    }
+    if (uniqueUserIds.isEmpty()) {
+      return nicknames;
+    }
+
+    MemcacheService memcache = MemcacheServiceFactory.getMemcacheService(MEMCACHE_NAMESPACE);
+    Map<String, Object> cached = memcache.getAll(uniqueUserIds);
+
+    List<Key> keysToLoad = new ArrayList<>();
+    for (String userId : uniqueUserIds) {
+      Object cachedNickname = cached.get(userId);
+      if (cachedNickname instanceof String) {
+        nicknames.put(userId, (String) cachedNickname);
+      } else if (NO_NICKNAME.equals(cachedNickname)) {
+        nicknames.put(userId, ANONYMOUS);
+      } else {
+        keysToLoad.add(KeyFactory.createKey(USER_INFO_KIND, userId));
+      }
+    }
+    if (keysToLoad.isEmpty()) {
+      return nicknames;
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Map<Key, Entity> entities = datastore.get(keysToLoad);
+    Map<String, String> loadedNicknames = new HashMap<>();
+    Map<String, Boolean> usersWithoutNickname = new HashMap<>();
+    for (Key key : keysToLoad) {
+      Entity entity = entities.get(key);
+      if (entity != null) {
+        loadedNicknames.put(key.getName(), (String) entity.getProperty(NICKNAME));
+      } else {
+        usersWithoutNickname.put(key.getName(), NO_NICKNAME);
+        nicknames.put(key.getName(), ANONYMOUS);
+      }
+    }
+    nicknames.putAll(loadedNicknames);
+
+    memcache.putAll(loadedNicknames);
+    memcache.putAll(usersWithoutNickname, Expiration.byDeltaSeconds(NO_NICKNAME_EXPIRATION_SECONDS));
+    return nicknames;
+  }
+
+  /** Sets the nickname of the user with the specified id in Datastore and Memcache. */
+  public static void putNickname(String userId, String nickname) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Entity entity = new Entity(USER_INFO_KIND, userId);
+    entity.setProperty(USERID, userId);
+    entity.setProperty(NICKNAME, nickname);
+    // Insert a new entry for the user in the datastore.
+    // Note: The "userId" is used as a key to identify each entry, so existing entries will be updated to use the new "nickname".
+    datastore.put(entity);
+
+    MemcacheService memcache = MemcacheServiceFactory.getMemcacheService(MEMCACHE_NAMESPACE);
+    memcache.put(userId, nickname);
+    // Comments are served with their authors' nicknames.
+    FeedVersions.bump(FeedVersions.COMMENTS);
+  }
+}
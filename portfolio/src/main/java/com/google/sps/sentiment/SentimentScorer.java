@@ -0,0 +1,210 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.sentiment;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.api.gax.rpc.InvalidArgumentException;
+import com.google.cloud.language.v1.Document;
+import com.google.cloud.language.v1.LanguageServiceClient;
+import com.google.sps.ClientRegistry;
+import com.google.sps.DatastoreQueries;
+import com.google.sps.FeedVersions;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Scores the sentiment of newly posted comments in the background, through the "sentiment" push
+ * queue.
+ *
+ * <p>Comments are stored with SENTIMENT_PENDING set and no SENTIMENT, and a task is queued to score
+ * them. The task scores them with the Natural Language API and writes the score back. If that fails
+ * the task fails too, and the queue retries it with backoff. The queue's settings in
+ * WEB-INF/queue.xml bound how many tasks run at once. Comments whose task couldn't be queued stay
+ * pending until the next sweep by {@link #enqueuePendingComments()}, which cron runs.
+ */
+public final class SentimentScorer {
+  public static final String SENTIMENT = "sentiment";
+  public static final String SENTIMENT_PENDING = "sentimentPending";
+  /** The URL of the servlet that runs the tasks. */
+  public static final String TASK_URL = "/tasks/score-sentiment";
+  /** The task parameter holding the ids of the comments to score, one value per comment. */
+  public static final String COMMENT_ID = "id";
+
+  private static final Logger logger = Logger.getLogger(SentimentScorer.class.getName());
+
+  private static final String QUEUE_NAME = "sentiment";
+  private static final String COMMENT_CONTENT = "content";
+  // Cross-group transactions may touch at most 25 entity groups.
+  private static final int MAX_BATCH_SIZE = 25;
+  // A single call can add at most 100 tasks to a queue.
+  private static final int MAX_TASKS_PER_ADD = 100;
+
+  private SentimentScorer() {}
+
+  /**
+   * Queues a task to score the comment with the given id. Returns false if the task couldn't be
+   * queued, in which case the comment stays pending until the next sweep.
+   */
+  public static boolean submit(long commentId) {
+    try {
+      getQueue().add(newTask(Collections.singletonList(commentId)));
+      return true;
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Failed to queue comment " + commentId + " for scoring.", e);
+      return false;
+    }
+  }
+
+  /**
+   * Queues tasks for every comment that is still pending, MAX_BATCH_SIZE comments per task, and
+   * returns the number of comments queued. A comment whose task is still waiting is queued again,
+   * which only scores it twice.
+   */
+  public static int enqueuePendingComments() {
+    Query query =
+        new Query("Comment")
+            .setFilter(new Query.FilterPredicate(SENTIMENT_PENDING, Query.FilterOperator.EQUAL, true));
+    List<Key> keys = DatastoreQueries.getKeys(query);
+    List<TaskOptions> tasks = new ArrayList<>();
+    for (int start = 0; start < keys.size(); start += MAX_BATCH_SIZE) {
+      List<Long> commentIds = new ArrayList<>();
+      for (Key key : keys.subList(start, Math.min(start + MAX_BATCH_SIZE, keys.size()))) {
+        commentIds.add(key.getId());
+      }
+      tasks.add(newTask(commentIds));
+    }
+    Queue queue = getQueue();
+    for (int start = 0; start < tasks.size(); start += MAX_TASKS_PER_ADD) {
+      queue.add(tasks.subList(start, Math.min(start + MAX_TASKS_PER_ADD, tasks.size())));
+    }
+    return keys.size();
+  }
+
+  /** Returns the number of scoring tasks waiting in the queue. */
+  public static int getQueueDepth() {
+    return getQueue().fetchStatistics().getNumTasks();
+  }
+
+  /**
+   * Scores the comments with the given ids and writes their sentiment back to Datastore. Each
+   * comment is scored on its own, so one failure doesn't hold back the rest of the batch. Returns
+   * the number of comments that failed in a way worth retrying; those stay pending.
+   *
+   * <p>A comment without text, e.g. one with only an image, is scored as neutral without calling
+   * the API, which rejects empty documents. A comment that the API rejects for any other reason
+   * is no longer pending but has no score.
+   */
+  public static int scoreComments(List<Long> commentIds) throws IOException {
+    List<Key> keys = new ArrayList<>(commentIds.size());
+    for (long commentId : commentIds) {
+      keys.add(KeyFactory.createKey("Comment", commentId));
+    }
+
+    // Comments deleted since they were posted are simply missing here, and already scored ones
+    // needn't be scored again.
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Map<Key, Entity> comments = datastore.get(keys);
+    comments.values().removeIf(comment -> comment.getProperty(SENTIMENT_PENDING) == null);
+    if (comments.isEmpty()) {
+      return 0;
+    }
+
+    // A null score marks a comment that the API rejected.
+    Map<Key, Float> scores = new HashMap<>();
+    int failures = 0;
+    LanguageServiceClient languageService = null;
+    for (Entity comment : comments.values()) {
+      String content = (String) comment.getProperty(COMMENT_CONTENT);
+      if (content == null || content.trim().isEmpty()) {
+        scores.put(comment.getKey(), 0f);
+        continue;
+      }
+      if (languageService == null) {
+        languageService = ClientRegistry.getLanguageServiceClient();
+      }
+      try {
+        scores.put(comment.getKey(), getSentimentScore(languageService, content));
+      } catch (InvalidArgumentException e) {
+        logger.log(Level.WARNING, "The API rejected comment " + comment.getKey().getId() + ".", e);
+        scores.put(comment.getKey(), null);
+      } catch (RuntimeException e) {
+        logger.log(Level.WARNING, "Failed to score comment " + comment.getKey().getId() + ".", e);
+        failures++;
+      }
+    }
+    if (scores.isEmpty()) {
+      return failures;
+    }
+
+    // Re-read the comments transactionally so that ones deleted while scoring aren't recreated.
+    Transaction transaction = datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+    try {
+      Map<Key, Entity> currentComments = datastore.get(transaction, scores.keySet());
+      for (Entity comment : currentComments.values()) {
+        Float score = scores.get(comment.getKey());
+        if (score != null) {
+          comment.setProperty(SENTIMENT, score);
+        }
+        comment.removeProperty(SENTIMENT_PENDING);
+      }
+      datastore.put(transaction, currentComments.values());
+      transaction.commit();
+      FeedVersions.bump(FeedVersions.COMMENTS);
+    } finally {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+    }
+    return failures;
+  }
+
+  private static Queue getQueue() {
+    return QueueFactory.getQueue(QUEUE_NAME);
+  }
+
+  private static TaskOptions newTask(List<Long> commentIds) {
+    TaskOptions task = TaskOptions.Builder.withUrl(TASK_URL);
+    for (long commentId : commentIds) {
+      task.param(COMMENT_ID, String.valueOf(commentId));
+    }
+    return task;
+  }
+
+  /**
+   * Returns the score of the sentiment of the comment's content,
+   * which is a float from -1 to 1 representing how negative or positive the text it.
+   */
+  private static float getSentimentScore(LanguageServiceClient languageService, String content) {
+    Document doc =
+        Document.newBuilder().setContent(content).setType(Document.Type.PLAIN_TEXT).build();
+    return languageService.analyzeSentiment(doc).getDocumentSentiment().getScore();
+  }
+}
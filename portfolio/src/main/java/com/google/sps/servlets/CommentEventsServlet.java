@@ -0,0 +1,101 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.sps.events.CommentEventLog;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that sends the comment events recorded since the client's last event as Server-Sent
+ * Events, for an EventSource on the comments page.
+ *
+ * <p>App Engine buffers whole responses, so the stream ends after each batch of events and tells
+ * the EventSource to reconnect after RETRY_MILLIS. It sends back the Last-Event-ID header on
+ * reconnecting, which is the time of the last event it received. A new client starts from the
+ * newest event in the log, so that its position comes from the same clocks as the events. A
+ * client that has fallen more than MAX_EVENTS_PER_RESPONSE events or the log's retention behind
+ * gets a single "reset" event instead of the backlog, and reloads the comments.
+ */
+@WebServlet("/comment-events")
+public class CommentEventsServlet extends HttpServlet {
+  private final static int MAX_EVENTS_PER_RESPONSE = 100;
+  private final static int RETRY_MILLIS = 5000;
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    response.setContentType("text/event-stream");
+    response.setCharacterEncoding("UTF-8");
+    response.setHeader("Cache-Control", "no-cache");
+    PrintWriter writer = response.getWriter();
+    writer.print("retry: " + RETRY_MILLIS + "\n\n");
+
+    long now = System.currentTimeMillis();
+    // Events newer than this may not be visible to queries yet; they are sent on a later request.
+    long settledMillis = now - CommentEventLog.SETTLE_MILLIS;
+    Long lastEventMillis = getLastEventMillis(request);
+    if (lastEventMillis == null) {
+      // A new listener only wants what happens from now on; give it a position to resume from. An
+      // empty log gives position 0, and every event recorded later is new to the listener.
+      Long newestEventMillis = CommentEventLog.getNewestEventMillis(settledMillis);
+      writer.print("id: " + (newestEventMillis == null ? 0 : newestEventMillis) + "\n\n");
+      return;
+    }
+    if (lastEventMillis != 0 && lastEventMillis < now - CommentEventLog.RETENTION_MILLIS) {
+      writeEvent(writer, settledMillis, CommentEventLog.RESET, "{}");
+      return;
+    }
+
+    // The last event the client received is sent again, since events recorded in the same
+    // millisecond can't be told apart. Applying an event twice does nothing.
+    List<Entity> events = CommentEventLog.getEvents(
+        lastEventMillis, settledMillis, MAX_EVENTS_PER_RESPONSE + 1);
+    if (events.size() > MAX_EVENTS_PER_RESPONSE) {
+      writeEvent(writer, settledMillis, CommentEventLog.RESET, "{}");
+      return;
+    }
+    for (Entity event : events) {
+      writeEvent(writer, CommentEventLog.getTimestamp(event), CommentEventLog.getType(event),
+          CommentEventLog.getData(event));
+    }
+  }
+
+  /**
+   * Returns the time of the last event the client received, from the Last-Event-ID header, or null
+   * if the client hasn't connected before.
+   */
+  private Long getLastEventMillis(HttpServletRequest request) {
+    String lastEventId = request.getHeader("Last-Event-ID");
+    if (lastEventId == null || lastEventId.isEmpty()) {
+      return null;
+    }
+    try {
+      return Long.parseLong(lastEventId);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /** Writes one event; {@code data} is single-line JSON. */
+  private void writeEvent(PrintWriter writer, long id, String type, String data) {
+    writer.print("id: " + id + "\nevent: " + type + "\ndata: " + data + "\n\n");
+  }
+}
@@ -14,38 +14,54 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.users.UserService;
+import com.google.appengine.api.users.UserServiceFactory;
 import com.google.gson.Gson;
+import com.google.sps.FeedVersions;
+import com.google.sps.JsonSerialization;
+import com.google.sps.mood.MoodCounter;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Servlet that fetches counts for different types of mood that users input together with their comments. */
+/**
+ * Servlet that fetches counts for different types of mood that users input together with their comments,
+ * or rebuilds those counts from the stored comments upon POST request.
+ *
+ * <p>Only admins can rebuild the counts, since a rebuild reads every comment.
+ */
 @WebServlet("/comments-mood")
 public class CommentsMoodServlet extends HttpServlet {
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Query query = new Query("Comment");
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    PreparedQuery results = datastore.prepare(query);
-
-    Map<String, Integer> moodCounts = new HashMap<>();
-    for (Entity commentEntity : results.asIterable()) {
-      String mood = (String) commentEntity.getProperty("mood");
-      int currentCount = moodCounts.containsKey(mood) ? moodCounts.get(mood) : 0;
-      moodCounts.put(mood, currentCount + 1);
+    if (FeedVersions.checkNotModified(FeedVersions.COMMENTS, request, response)) {
+      return;
     }
 
+    Map<String, Long> moodCounts = MoodCounter.getCounts();
+
+    response.setContentType("application/json");
+    Gson gson = JsonSerialization.GSON;
+    String json = gson.toJson(moodCounts);
+    response.getWriter().println(json);
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    UserService userService = UserServiceFactory.getUserService();
+    if (!userService.isUserLoggedIn() || !userService.isUserAdmin()) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN, "Only admins can rebuild the counts.");
+      return;
+    }
+
+    Map<String, Long> moodCounts = MoodCounter.rebuild();
+    FeedVersions.bump(FeedVersions.COMMENTS);
+
     response.setContentType("application/json");
-    Gson gson = new Gson();
+    Gson gson = JsonSerialization.GSON;
     String json = gson.toJson(moodCounts);
     response.getWriter().println(json);
   }
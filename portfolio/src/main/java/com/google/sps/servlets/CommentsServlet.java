@@ -19,24 +19,31 @@ import com.google.appengine.api.blobstore.BlobInfoFactory;
 import com.google.appengine.api.blobstore.BlobKey;
 import com.google.appengine.api.blobstore.BlobstoreService;
 import com.google.appengine.api.blobstore.BlobstoreServiceFactory;
+import com.google.appengine.api.datastore.Cursor;
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.PreparedQuery;
+import com.google.appengine.api.datastore.FetchOptions;
 import com.google.appengine.api.datastore.Query.SortDirection;
 import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.QueryResultList;
 import com.google.appengine.api.users.UserService;
 import com.google.appengine.api.users.UserServiceFactory;
-import com.google.cloud.language.v1.Document;
-import com.google.cloud.language.v1.LanguageServiceClient;
-import com.google.cloud.language.v1.Sentiment;
-import com.google.cloud.translate.Translate;
-import com.google.cloud.translate.TranslateOptions;
-import com.google.cloud.translate.Translation;
-import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.google.sps.ClientRegistry;
+import com.google.sps.FeedVersions;
+import com.google.sps.JsonStreams;
 import com.google.sps.data.Comment;
+import com.google.sps.events.CommentEventLog;
+import com.google.sps.mood.MoodCounter;
+import com.google.sps.nickname.NicknameCache;
+import com.google.sps.sentiment.SentimentScorer;
+import com.google.sps.translation.TranslationCache;
+import com.google.sps.translation.Translator;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import javax.servlet.annotation.WebServlet;
@@ -51,44 +58,75 @@ public class CommentsServlet extends HttpServlet {
   private final static String MOOD = "mood";
   private final static String COMMENT_CONTENT = "content";
   private final static String BLOB_KEY = "blobkey";
-  private final static String SENTIMENT = "sentiment";
   private final static String TIMESTAMP = "timestamp";
   private final static String LANGUAGE_CODE_ORIGINAL = "original";
+  private final static int DEFAULT_PAGE_SIZE = 10;
+  private final static int MAX_PAGE_SIZE = 50;
+
+  private Translator translator;
+
+  public CommentsServlet() {}
+
+  /** Creates a servlet that translates with {@code translator} instead of the Cloud service. */
+  CommentsServlet(Translator translator) {
+    this.translator = translator;
+  }
+
+  @Override
+  public void init() {
+    if (translator == null) {
+      translator = ClientRegistry.getTranslator();
+    }
+  }
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (FeedVersions.checkNotModified(FeedVersions.COMMENTS, request, response)) {
+      return;
+    }
+
     String languageCode = request.getParameter("languageCode");
 
+    FetchOptions fetchOptions = FetchOptions.Builder.withLimit(getPageSize(request));
+    String startCursor = request.getParameter("cursor");
+    if (startCursor != null && !startCursor.isEmpty()) {
+      try {
+        fetchOptions.startCursor(Cursor.fromWebSafeString(startCursor));
+      } catch (IllegalArgumentException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid cursor.");
+        return;
+      }
+    }
+
     Query query = new Query("Comment").addSort(TIMESTAMP, SortDirection.DESCENDING);
 
     DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    PreparedQuery results = datastore.prepare(query);
-
-    ArrayList<Comment> comments = new ArrayList<>();
-    for (Entity commentEntity : results.asIterable()) {
-      long id = commentEntity.getKey().getId();
-      String userId = (String) commentEntity.getProperty(USER_ID);
-      String mood = (String) commentEntity.getProperty(MOOD);
-      String content = (String) commentEntity.getProperty(COMMENT_CONTENT);
-      if (!LANGUAGE_CODE_ORIGINAL.equals(languageCode)) {
-        content = getTranslatedComment(content, languageCode);
-      }
+    QueryResultList<Entity> results = datastore.prepare(query).asQueryResultList(fetchOptions);
 
-      String blobKeyString = (String) commentEntity.getProperty(BLOB_KEY);
-      double sentiment = (double) commentEntity.getProperty(SENTIMENT);  // Datastore keeps double by default.
-      long timestamp = (long) commentEntity.getProperty(TIMESTAMP);
+    // A missing language means the original contents too, and would not make a valid cache key.
+    boolean original = languageCode == null || languageCode.isEmpty()
+        || LANGUAGE_CODE_ORIGINAL.equals(languageCode);
+    Map<Long, String> translations = original ? null : getTranslatedComments(results, languageCode);
 
-      comments.add(new Comment(id, userId, mood, content, blobKeyString, (float) sentiment, timestamp));
-    }
+    // Embed the authors' display names when asked, so the page needn't request them one by one.
+    Map<String, String> nicknames = Boolean.parseBoolean(request.getParameter("includeNicknames"))
+        ? getNicknames(results)
+        : null;
 
-    // Convert the ArrayList into a JSON string using the Gson library.
-    Gson gson = new Gson();
-    String json = gson.toJson(comments);
-
-    // Send the JSON as the response.
+    // Send the page as JSON, writing each comment as soon as it's converted.
     response.setContentType("text/html; charset=UTF-8;");
     response.setCharacterEncoding("UTF-8");
-    response.getWriter().println(json);
+    JsonWriter writer = JsonStreams.newWriter(response);
+    writer.beginObject();
+    writer.name("comments");
+    JsonStreams.writeArray(
+        writer, results, commentEntity -> toComment(commentEntity, translations, nicknames));
+    // A page shorter than the limit means there is nothing left to fetch.
+    if (results.size() == fetchOptions.getLimit()) {
+      writer.name("nextCursor").value(results.getCursor().toWebSafeString());
+    }
+    writer.endObject();
+    writer.flush();
   }
 
   @Override
@@ -117,12 +155,16 @@ public class CommentsServlet extends HttpServlet {
     commentEntity.setProperty(MOOD, mood);
     commentEntity.setProperty(COMMENT_CONTENT, content);
     commentEntity.setProperty(BLOB_KEY, blobKeyString);
-    commentEntity.setProperty(SENTIMENT, getSentimentScore(content));
+    commentEntity.setProperty(SentimentScorer.SENTIMENT_PENDING, true);
     commentEntity.setProperty(TIMESTAMP, timestamp);
 
-    // Store the comment entity to datastore.
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    datastore.put(commentEntity);
+    // Store the comment entity to datastore together with its mood count, and score its sentiment in
+    // the background.
+    MoodCounter.putComment(commentEntity);
+    FeedVersions.bump(FeedVersions.COMMENTS);
+    CommentEventLog.recordCreated(toComment(commentEntity, null,
+        Collections.singletonMap(userId, NicknameCache.getNickname(userId))));
+    SentimentScorer.submit(commentEntity.getKey().getId());
 
     // Redirect back to the HTML page.
     response.sendRedirect("/comments.html");
@@ -158,26 +200,91 @@ public class CommentsServlet extends HttpServlet {
     return blobKey.getKeyString();
   }
 
-  /** 
-   * Returns the score of the sentiment of the given message,
-   * which is a float from -1 to 1 representing how negative or positive the text it.
+  /**
+   * Converts a comment entity to a Comment, using its translated content and its author's nickname
+   * from the given maps unless they are null.
+   */
+  private Comment toComment(
+      Entity commentEntity, Map<Long, String> translations, Map<String, String> nicknames) {
+    long id = commentEntity.getKey().getId();
+    String userId = (String) commentEntity.getProperty(USER_ID);
+    String mood = (String) commentEntity.getProperty(MOOD);
+    String content = (String) commentEntity.getProperty(COMMENT_CONTENT);
+    if (translations != null) {
+      content = translations.get(id);
+    }
+
+    String blobKeyString = (String) commentEntity.getProperty(BLOB_KEY);
+    // Datastore keeps double by default. Comments that haven't been scored yet have no sentiment.
+    Double sentiment = (Double) commentEntity.getProperty(SentimentScorer.SENTIMENT);
+    long timestamp = (long) commentEntity.getProperty(TIMESTAMP);
+
+    String nickname = nicknames == null ? null : nicknames.get(userId);
+
+    return new Comment(id, userId, mood, content, blobKeyString, sentiment == null ? null : sentiment.floatValue(), timestamp, nickname);
+  }
+
+  /** Returns the display names of the authors of the given comment entities, keyed by user id. */
+  private Map<String, String> getNicknames(List<Entity> commentEntities) {
+    List<String> userIds = new ArrayList<>(commentEntities.size());
+    for (Entity commentEntity : commentEntities) {
+      userIds.add((String) commentEntity.getProperty(USER_ID));
+    }
+    return NicknameCache.getNicknames(userIds);
+  }
+
+  /**
+   * Returns the number of comments requested per page through the "limit" parameter, clamped to
+   * [1, MAX_PAGE_SIZE], or DEFAULT_PAGE_SIZE if the parameter is missing or malformed.
    */
-  private float getSentimentScore(String message) throws IOException {
-    Document doc =
-        Document.newBuilder().setContent(message).setType(Document.Type.PLAIN_TEXT).build();
-    LanguageServiceClient languageService = LanguageServiceClient.create();
-    Sentiment sentiment = languageService.analyzeSentiment(doc).getDocumentSentiment();
-    languageService.close();
-    return sentiment.getScore();
+  private int getPageSize(HttpServletRequest request) {
+    String limitString = request.getParameter("limit");
+    if (limitString == null) {
+      return DEFAULT_PAGE_SIZE;
+    }
+    try {
+      return Math.max(1, Math.min(MAX_PAGE_SIZE, Integer.parseInt(limitString)));
+    } catch (NumberFormatException e) {
+      return DEFAULT_PAGE_SIZE;
+    }
   }
 
-  /** 
-   * Translates a comment to the language represented by {@code languageCode}.
+  /**
+   * Returns the contents of the given comment entities translated to the language represented by
+   * {@code languageCode}, keyed by comment id. Translations are served from the translation cache
+   * when possible, and the rest are requested in batches and added to it.
    */
-  private String getTranslatedComment(String originalComment, String languageCode) {
-    Translate translateService = TranslateOptions.getDefaultInstance().getService();
-    Translation translation =
-        translateService.translate(originalComment, Translate.TranslateOption.targetLanguage(languageCode));
-    return translation.getTranslatedText();
+  private Map<Long, String> getTranslatedComments(List<Entity> commentEntities, String languageCode) {
+    List<Long> ids = new ArrayList<>(commentEntities.size());
+    for (Entity commentEntity : commentEntities) {
+      ids.add(commentEntity.getKey().getId());
+    }
+
+    TranslationCache translationCache = TranslationCache.getInstance();
+    Map<Long, String> translations = translationCache.getAll(ids, languageCode);
+
+    // Translate every cache miss on this page together, mapping the results back by index.
+    List<Long> missedIds = new ArrayList<>();
+    List<String> missedContents = new ArrayList<>();
+    for (Entity commentEntity : commentEntities) {
+      long id = commentEntity.getKey().getId();
+      if (!translations.containsKey(id)) {
+        missedIds.add(id);
+        missedContents.add((String) commentEntity.getProperty(COMMENT_CONTENT));
+      }
+    }
+    if (missedIds.isEmpty()) {
+      return translations;
+    }
+
+    List<String> translatedContents = translator.translate(missedContents, languageCode);
+    Map<Long, String> newTranslations = new HashMap<>();
+    for (int i = 0; i < missedIds.size(); i++) {
+      newTranslations.put(missedIds.get(i), translatedContents.get(i));
+    }
+    translationCache.putAll(newTranslations, languageCode);
+
+    translations.putAll(newTranslations);
+    return translations;
   }
 }
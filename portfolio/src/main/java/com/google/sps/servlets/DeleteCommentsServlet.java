@@ -14,40 +14,146 @@
 
 package com.google.sps.servlets;
 
+import com.google.appengine.api.blobstore.BlobKey;
+import com.google.appengine.api.blobstore.BlobstoreService;
+import com.google.appengine.api.blobstore.BlobstoreServiceFactory;
+import com.google.appengine.api.datastore.Cursor;
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
 import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.KeyFactory;
 import com.google.appengine.api.datastore.PreparedQuery;
+import com.google.appengine.api.datastore.PropertyProjection;
 import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.QueryResultList;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.gson.JsonObject;
+import com.google.sps.DatastoreQueries;
+import com.google.sps.FeedVersions;
+import com.google.sps.JsonSerialization;
+import com.google.sps.events.CommentEventLog;
+import com.google.sps.mood.MoodCounter;
+import com.google.sps.translation.TranslationCache;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Servlet responsible for deleting one comment if an id is passed, or otherwise deleting all comments. */
+/**
+ * Servlet responsible for deleting one comment if an id is passed, or otherwise deleting all comments.
+ * Images uploaded with the deleted comments are deleted from Blobstore as well.
+ *
+ * <p>Deleting all comments is done in batches. If the comments don't fit in one request, the servlet
+ * queues a task that POSTs back to itself with a query cursor and picks up where it stopped, until
+ * no comments are left.
+ */
 @WebServlet("/delete-comments")
 public class DeleteCommentsServlet extends HttpServlet {
+  private static final Logger logger = Logger.getLogger(DeleteCommentsServlet.class.getName());
+
+  private final static String BLOB_KEY = "blobkey";
+  private final static String CURSOR = "cursor";
+  private final static int MAX_BATCHES_PER_REQUEST = 20;
+
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-
     String idString = request.getParameter("id");
     if (idString == null) {
-      Query query = new Query("Comment");
-      PreparedQuery results = datastore.prepare(query);
-
-      for (Entity commentEntity : results.asIterable()) {
-        long id = commentEntity.getKey().getId();
-        Key commentEntityKey = KeyFactory.createKey("Comment", id);
-        datastore.delete(commentEntityKey);
-      }
+      deleteAllComments(request, response);
     } else {
       long id = Long.parseLong(idString);
       Key commentEntityKey = KeyFactory.createKey("Comment", id);
-      datastore.delete(commentEntityKey);
+      Entity commentEntity = MoodCounter.deleteComment(commentEntityKey);
+      FeedVersions.bump(FeedVersions.COMMENTS);
+      if (commentEntity != null) {
+        CommentEventLog.recordDeleted(id);
+      }
+      if (commentEntity != null && commentEntity.getProperty(BLOB_KEY) != null) {
+        BlobstoreService blobstoreService = BlobstoreServiceFactory.getBlobstoreService();
+        blobstoreService.delete(new BlobKey((String) commentEntity.getProperty(BLOB_KEY)));
+      }
+      TranslationCache.getInstance().invalidate(id);
+    }
+  }
+
+  /**
+   * Deletes up to MAX_BATCHES_PER_REQUEST batches of comments, starting after the cursor the request
+   * carries, and reports the progress as JSON. If comments remain, a task carrying the cursor is
+   * queued to continue; once none remain, the derived data is cleared.
+   */
+  private void deleteAllComments(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    FetchOptions batchOptions = FetchOptions.Builder.withLimit(DatastoreQueries.MAX_BATCH_SIZE);
+    String startCursor = request.getParameter(CURSOR);
+    if (startCursor != null && !startCursor.isEmpty()) {
+      try {
+        batchOptions.startCursor(Cursor.fromWebSafeString(startCursor));
+      } catch (IllegalArgumentException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid cursor.");
+        return;
+      }
     }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    BlobstoreService blobstoreService = BlobstoreServiceFactory.getBlobstoreService();
+
+    // Every comment has a blob key property, null when it has no image, so one projection on it
+    // reaches all of them. The cursor moves past each batch, so no comment is read twice even while
+    // the index still lists the ones already deleted.
+    Query query = new Query("Comment").addProjection(new PropertyProjection(BLOB_KEY, String.class));
+    PreparedQuery preparedQuery = datastore.prepare(query);
+
+    int deletedComments = 0;
+    int deletedBlobs = 0;
+    boolean done = false;
+    for (int batch = 0; batch < MAX_BATCHES_PER_REQUEST && !done; batch++) {
+      QueryResultList<Entity> commentEntities = preparedQuery.asQueryResultList(batchOptions);
+
+      List<Key> commentKeys = new ArrayList<>(commentEntities.size());
+      List<BlobKey> blobKeys = new ArrayList<>();
+      for (Entity commentEntity : commentEntities) {
+        commentKeys.add(commentEntity.getKey());
+        if (commentEntity.getProperty(BLOB_KEY) != null) {
+          blobKeys.add(new BlobKey((String) commentEntity.getProperty(BLOB_KEY)));
+        }
+      }
+
+      // Delete the comments before their images so that no comment is left pointing to a missing image.
+      datastore.delete(commentKeys);
+      if (!blobKeys.isEmpty()) {
+        blobstoreService.delete(blobKeys.toArray(new BlobKey[0]));
+      }
+      FeedVersions.bump(FeedVersions.COMMENTS);
+      deletedComments += commentKeys.size();
+      deletedBlobs += blobKeys.size();
+      done = commentKeys.size() < DatastoreQueries.MAX_BATCH_SIZE;
+      batchOptions.startCursor(commentEntities.getCursor());
+    }
+
+    if (done) {
+      MoodCounter.reset();
+      FeedVersions.bump(FeedVersions.COMMENTS);
+      CommentEventLog.recordReset();
+      TranslationCache.getInstance().invalidateAll();
+    } else {
+      QueueFactory.getDefaultQueue().add(TaskOptions.Builder.withUrl("/delete-comments")
+          .param(CURSOR, batchOptions.getStartCursor().toWebSafeString()));
+    }
+    logger.info(String.format("Deleted %d comments and %d images; %s.",
+        deletedComments, deletedBlobs, done ? "done" : "continuing in a task"));
+
+    JsonObject progress = new JsonObject();
+    progress.addProperty("deletedComments", deletedComments);
+    progress.addProperty("deletedBlobs", deletedBlobs);
+    progress.addProperty("done", done);
+    response.setContentType("application/json");
+    response.getWriter().println(JsonSerialization.GSON.toJson(progress));
   }
 }
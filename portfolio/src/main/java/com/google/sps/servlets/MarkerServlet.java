@@ -17,13 +17,23 @@ package com.google.sps.servlets;
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.PreparedQuery;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.PropertyProjection;
 import com.google.appengine.api.datastore.Query;
-import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.google.sps.DatastoreQueries;
+import com.google.sps.FeedVersions;
+import com.google.sps.JsonStreams;
 import com.google.sps.data.Marker;
+import com.google.sps.data.MarkerCluster;
+import com.google.sps.tiles.QuadKeys;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -31,23 +41,69 @@ import javax.servlet.http.HttpServletResponse;
 import org.jsoup.Jsoup;
 import org.jsoup.safety.Whitelist;
 
-/** Servlet that handles the fetching and saving of markers data. */
+/**
+ * Servlet that handles the fetching and saving of markers data.
+ *
+ * <p>Each marker is stored with the quadtree key of its map tile (see QuadKeys), so the markers in a
+ * viewport are read with one key range query per tile covering it. Below CLUSTER_MAX_ZOOM, markers
+ * close to each other on screen are sent as one cluster with their count and centroid.
+ */
 @WebServlet("/markers")
 public class MarkerServlet extends HttpServlet {
   private final String LAT = "lat";
   private final String LNG = "lng";
   private final String CONTENT = "content";
+  private final String TILE = "tile";
+  // Markers in one tile CLUSTER_CELL_LEVELS zooms deeper than the map's, 32 pixels wide, are merged.
+  private final int CLUSTER_MAX_ZOOM = 12;
+  private final int CLUSTER_CELL_LEVELS = 3;
+  // Zoom out the covering tiles until a viewport needs at most this many range queries.
+  private final int MAX_TILE_QUERIES = 9;
+  private final Key TILE_BACKFILL_KEY = KeyFactory.createKey("Migration", "markerTiles");
 
   @Override
-  /** Get a JSON array containing the marker data. */
+  public void init() {
+    backfillTiles();
+  }
+
+  @Override
+  /**
+   * Get a JSON array containing the marker data. With the "bbox" (south,west,north,east, as sent by
+   * LatLngBounds.toUrlValue) and "zoom" parameters, only markers in the box are returned, and
+   * clustered below CLUSTER_MAX_ZOOM.
+   */
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    response.setContentType("application/json");
+    String bbox = request.getParameter("bbox");
+    double[] box = null;
+    int zoom = 0;
+    if (bbox != null) {
+      try {
+        box = parseBox(bbox);
+        zoom = Math.max(0, Math.min(QuadKeys.MAX_ZOOM, Integer.parseInt(request.getParameter("zoom"))));
+      } catch (NumberFormatException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid bbox or zoom.");
+        return;
+      }
+    }
 
-    Collection<Marker> markers = getMarkers();
-    Gson gson = new Gson();
-    String json = gson.toJson(markers);
+    if (FeedVersions.checkNotModified(FeedVersions.MARKERS, request, response)) {
+      return;
+    }
 
-    response.getWriter().println(json);
+    response.setContentType("application/json");
+    JsonWriter writer = JsonStreams.newWriter(response);
+    if (box == null) {
+      // Write each marker as soon as it's read from Datastore instead of collecting them all first.
+      JsonStreams.writeArray(writer, getMarkerEntities(), this::toMarker);
+    } else {
+      List<Entity> markerEntities = getMarkerEntitiesInBox(box, zoom);
+      List<Object> markers = zoom < CLUSTER_MAX_ZOOM
+          ? cluster(markerEntities, zoom + CLUSTER_CELL_LEVELS)
+          : new ArrayList<>(markerEntities);
+      JsonStreams.writeArray(writer, markers,
+          marker -> marker instanceof Entity ? toMarker((Entity) marker) : marker);
+    }
+    writer.flush();
   }
 
   @Override
@@ -61,32 +117,150 @@ public class MarkerServlet extends HttpServlet {
     storeMarker(marker);
   }
 
-  /** Fetches markers from Datastore. */
-  private Collection<Marker> getMarkers() {
-    Collection<Marker> markers = new ArrayList<>();
+  /** Fetches the marker entities from Datastore, with only the properties a marker needs. */
+  private Iterable<Entity> getMarkerEntities() {
+    // Read them straight from the composite (lat, lng, content) index.
+    return DatastoreQueries.getProjection(new Query("Marker"),
+        new PropertyProjection(LAT, Double.class),
+        new PropertyProjection(LNG, Double.class),
+        new PropertyProjection(CONTENT, String.class));
+  }
 
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Query query = new Query("Marker");
-    PreparedQuery results = datastore.prepare(query);
+  /**
+   * Fetches the marker entities inside {south, west, north, east}, reading the tiles that cover it
+   * at {@code zoom} or, if that takes too many queries, at a lower zoom.
+   */
+  private List<Entity> getMarkerEntitiesInBox(double[] box, int zoom) {
+    int tileZoom = zoom;
+    while (tileZoom > 0
+        && QuadKeys.countCoveringTiles(box[0], box[1], box[2], box[3], tileZoom) > MAX_TILE_QUERIES) {
+      tileZoom--;
+    }
+
+    List<Entity> markerEntities = new ArrayList<>();
+    for (String quadKey : QuadKeys.getCoveringQuadKeys(box[0], box[1], box[2], box[3], tileZoom)) {
+      Query query = new Query("Marker").setFilter(Query.CompositeFilterOperator.and(
+          new Query.FilterPredicate(TILE, Query.FilterOperator.GREATER_THAN_OR_EQUAL, quadKey),
+          new Query.FilterPredicate(
+              TILE, Query.FilterOperator.LESS_THAN, QuadKeys.getRangeEnd(quadKey))));
+      // Read them straight from the composite (tile, lat, lng, content) index.
+      List<Entity> tileEntities = DatastoreQueries.getProjection(query,
+          new PropertyProjection(TILE, String.class),
+          new PropertyProjection(LAT, Double.class),
+          new PropertyProjection(LNG, Double.class),
+          new PropertyProjection(CONTENT, String.class));
+      // The tiles stick out of the box, so drop what falls outside of it.
+      for (Entity entity : tileEntities) {
+        if (isInBox((double) entity.getProperty(LAT), (double) entity.getProperty(LNG), box)) {
+          markerEntities.add(entity);
+        }
+      }
+    }
+    return markerEntities;
+  }
 
-    for (Entity entity : results.asIterable()) {
-      double lat = (double) entity.getProperty(LAT);
-      double lng = (double) entity.getProperty(LNG);
-      String content = (String) entity.getProperty(CONTENT);
+  /**
+   * Groups the marker entities by their tile at {@code cellZoom}. Returns a MarkerCluster for each
+   * tile with more than one marker, and the marker entity itself for the others.
+   */
+  private List<Object> cluster(List<Entity> markerEntities, int cellZoom) {
+    Map<String, List<Entity>> cells = new LinkedHashMap<>();
+    for (Entity entity : markerEntities) {
+      String cell = ((String) entity.getProperty(TILE)).substring(0, cellZoom);
+      cells.computeIfAbsent(cell, key -> new ArrayList<>()).add(entity);
+    }
 
-      markers.add(new Marker(lat, lng, content));
+    List<Object> markers = new ArrayList<>();
+    for (List<Entity> cellEntities : cells.values()) {
+      if (cellEntities.size() == 1) {
+        markers.add(cellEntities.get(0));
+        continue;
+      }
+      double latSum = 0;
+      double lngSum = 0;
+      for (Entity entity : cellEntities) {
+        latSum += (double) entity.getProperty(LAT);
+        lngSum += (double) entity.getProperty(LNG);
+      }
+      int count = cellEntities.size();
+      markers.add(new MarkerCluster(latSum / count, lngSum / count, count));
     }
     return markers;
   }
 
+  /** Parses "south,west,north,east" into an array in that order. */
+  private double[] parseBox(String bbox) {
+    String[] parts = bbox.split(",");
+    if (parts.length != 4) {
+      throw new NumberFormatException("Expected 4 coordinates in bbox: " + bbox);
+    }
+    double[] box = new double[4];
+    for (int i = 0; i < 4; i++) {
+      box[i] = Double.parseDouble(parts[i]);
+    }
+    return box;
+  }
+
+  /** Returns whether the point is in {south, west, north, east}, which may cross the antimeridian. */
+  private boolean isInBox(double lat, double lng, double[] box) {
+    if (lat < box[0] || lat > box[2]) {
+      return false;
+    }
+    return box[1] <= box[3]
+        ? lng >= box[1] && lng <= box[3]
+        : lng >= box[1] || lng <= box[3];
+  }
+
+  /** Converts a marker entity to a Marker. */
+  private Marker toMarker(Entity entity) {
+    double lat = (double) entity.getProperty(LAT);
+    double lng = (double) entity.getProperty(LNG);
+    String content = (String) entity.getProperty(CONTENT);
+    return new Marker(lat, lng, content);
+  }
+
   /** Stores a marker in Datastore. */
   public void storeMarker(Marker marker) {
     Entity markerEntity = new Entity("Marker");
     markerEntity.setProperty(LAT, marker.getLat());
     markerEntity.setProperty(LNG, marker.getLng());
     markerEntity.setProperty(CONTENT, marker.getContent());
+    markerEntity.setProperty(TILE, QuadKeys.getQuadKey(marker.getLat(), marker.getLng(), QuadKeys.MAX_ZOOM));
 
     DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
     datastore.put(markerEntity);
+    FeedVersions.bump(FeedVersions.MARKERS);
+  }
+
+  /**
+   * Adds the tile property to markers stored before it existed, once. Markers without it can't be
+   * found by the tile queries, and a missing property can't be queried for, so every marker is read.
+   */
+  private void backfillTiles() {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    try {
+      datastore.get(TILE_BACKFILL_KEY);
+      return;
+    } catch (EntityNotFoundException e) {
+      // Not done yet.
+    }
+
+    List<Entity> markerEntities = new ArrayList<>();
+    for (Entity entity : datastore.prepare(new Query("Marker")).asIterable()) {
+      if (!entity.hasProperty(TILE)) {
+        double lat = (double) entity.getProperty(LAT);
+        double lng = (double) entity.getProperty(LNG);
+        entity.setProperty(TILE, QuadKeys.getQuadKey(lat, lng, QuadKeys.MAX_ZOOM));
+        markerEntities.add(entity);
+      }
+    }
+    for (int start = 0; start < markerEntities.size(); start += DatastoreQueries.MAX_BATCH_SIZE) {
+      datastore.put(markerEntities.subList(
+          start, Math.min(start + DatastoreQueries.MAX_BATCH_SIZE, markerEntities.size())));
+    }
+    datastore.put(new Entity(TILE_BACKFILL_KEY));
+    if (!markerEntities.isEmpty()) {
+      FeedVersions.bump(FeedVersions.MARKERS);
+    }
   }
 }
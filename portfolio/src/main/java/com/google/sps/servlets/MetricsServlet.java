@@ -0,0 +1,61 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.sps.ClientRegistry;
+import com.google.sps.FeedVersions;
+import com.google.sps.JsonSerialization;
+import com.google.sps.sentiment.SentimentScorer;
+import com.google.sps.translation.CloudTranslator;
+import com.google.sps.translation.TranslationCache;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that returns this instance's counters, such as cache hits, and the depth of the background
+ * queue shared by all instances.
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    Map<String, Number> metrics = new LinkedHashMap<>();
+
+    metrics.put("sentimentQueueDepth", SentimentScorer.getQueueDepth());
+
+    TranslationCache translationCache = TranslationCache.getInstance();
+    metrics.put("translationCacheInMemoryHits", translationCache.getInMemoryHits());
+    metrics.put("translationCacheDatastoreHits", translationCache.getDatastoreHits());
+    metrics.put("translationCacheMisses", translationCache.getMisses());
+
+    CloudTranslator translator = ClientRegistry.getTranslator();
+    metrics.put("translationBatches", translator.getBatchCount());
+    metrics.put("translationAverageBatchLatencyMillis", translator.getAverageBatchLatencyMillis());
+
+    metrics.put("feedRequests", FeedVersions.getCheckedRequests());
+    metrics.put("feedNotModifiedResponses", FeedVersions.getNotModifiedResponses());
+    metrics.put("feedCacheHitRatio", FeedVersions.getHitRatio());
+
+    response.setContentType("application/json");
+    Gson gson = JsonSerialization.GSON;
+    response.getWriter().println(gson.toJson(metrics));
+  }
+}
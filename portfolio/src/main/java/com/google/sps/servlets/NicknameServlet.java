@@ -14,31 +14,49 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
 import com.google.appengine.api.users.UserService;
 import com.google.appengine.api.users.UserServiceFactory;
+import com.google.gson.Gson;
+import com.google.sps.JsonSerialization;
+import com.google.sps.nickname.NicknameCache;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Servlet that stores the user's id and nickname entered, and returns a display name upon GET request. */
+/**
+ * Servlet that stores the user's id and nickname entered, and returns a display name upon GET request,
+ * or a map of display names if a list of user ids is passed.
+ */
 @WebServlet("/nickname")
 public class NicknameServlet extends HttpServlet {
-  private final String USERID = "userId";
-  private final String NICKNAME = "nickname";
-
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
     UserService userService = UserServiceFactory.getUserService();
 
+    // A comma-separated list of ids is answered with a JSON object mapping each id to its display name.
+    String userIds = request.getParameter("userIds");
+    if (userIds != null) {
+      // Blank entries, as in "a,,b", name no user and are left out.
+      List<String> userIdList = new ArrayList<>();
+      for (String userId : userIds.split(",")) {
+        if (!userId.trim().isEmpty()) {
+          userIdList.add(userId);
+        }
+      }
+      Map<String, String> nicknames = NicknameCache.getNicknames(userIdList);
+      response.setContentType("application/json");
+      Gson gson = JsonSerialization.GSON;
+      response.getWriter().println(gson.toJson(nicknames));
+      return;
+    }
+
     String userId = request.getParameter("userId");    
-    String nickname = getUserNickname(userId);
+    String nickname = NicknameCache.getNickname(userId);
 
     response.setContentType("text/html;");
     response.getWriter().println(nickname);
@@ -55,32 +73,8 @@ public class NicknameServlet extends HttpServlet {
     String nickname = request.getParameter("nickname-input");
     String userId = userService.getCurrentUser().getUserId();
 
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Entity entity = new Entity("UserInfo", userId);
-    entity.setProperty(USERID, userId);
-    entity.setProperty(NICKNAME, nickname);
-    // Insert a new entry for the user in the datastore.
-    // Note: The "userId" is used as a key to identify each entry, so existing entries will be updated to use the new "nickname".
-    datastore.put(entity);
+    NicknameCache.putNickname(userId, nickname);
 
     response.sendRedirect("/comments.html");
   }
-
-  /**
-   * Returns the nickname of the user with the specified id, or "Anonymous" if no nickname is set.
-   */
-  private String getUserNickname(String userId) {
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Query query =
-        new Query("UserInfo")
-            .setFilter(new Query.FilterPredicate(USERID, Query.FilterOperator.EQUAL, userId));
-
-    PreparedQuery results = datastore.prepare(query);
-    Entity entity = results.asSingleEntity();
-    if (entity == null) {
-      return "Anonymous";
-    }
-    String nickname = (String) entity.getProperty(NICKNAME);
-    return nickname;
-  }
 }
@@ -0,0 +1,67 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.sentiment.SentimentScorer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that runs the sentiment scoring tasks queued by {@link SentimentScorer} upon POST
+ * request, and queues tasks for every comment still pending upon GET request, which cron sends.
+ * Only admins, the Task Queue and cron can reach it, as set in web.xml.
+ */
+@WebServlet(SentimentScorer.TASK_URL)
+public class SentimentTaskServlet extends HttpServlet {
+  private static final Logger logger = Logger.getLogger(SentimentTaskServlet.class.getName());
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    int queuedComments = SentimentScorer.enqueuePendingComments();
+    logger.info(String.format("Queued %d pending comments for scoring.", queuedComments));
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String[] idStrings = request.getParameterValues(SentimentScorer.COMMENT_ID);
+    if (idStrings == null) {
+      return;
+    }
+    List<Long> commentIds = new ArrayList<>(idStrings.length);
+    for (String idString : idStrings) {
+      commentIds.add(Long.parseLong(idString));
+    }
+
+    // Failing the task makes the queue retry it later, and then only the comments still pending
+    // are scored again.
+    try {
+      int failures = SentimentScorer.scoreComments(commentIds);
+      if (failures > 0) {
+        response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+            failures + " of " + commentIds.size() + " comments are still pending.");
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.log(Level.WARNING, "Failed to score " + commentIds.size() + " comments.", e);
+      response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    }
+  }
+}
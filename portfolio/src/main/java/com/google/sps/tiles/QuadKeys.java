@@ -0,0 +1,123 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.tiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Quadtree keys of Web Mercator map tiles, the tiles Google Maps draws.
+ *
+ * <p>A tile at zoom z has a key of z digits from 0 to 3; each digit picks one quarter of the tile
+ * named by the digits before it. The key of a point is the key of the deepest tile containing it,
+ * so all points in a tile share its key as a prefix, and sort next to each other. That turns "the
+ * points in this tile" into a range filter on a single indexed string property.
+ */
+public final class QuadKeys {
+  /** The zoom of the tiles whose keys are stored with each point. */
+  public static final int MAX_ZOOM = 20;
+
+  // Web Mercator can't show the poles; points beyond these latitudes go in the edge tiles.
+  private static final double MAX_LATITUDE = 85.05112878;
+
+  private QuadKeys() {}
+
+  /** Returns the key of the tile at {@code zoom} that contains the given point. */
+  public static String getQuadKey(double lat, double lng, int zoom) {
+    return toQuadKey(getTileX(lng, zoom), getTileY(lat, zoom), zoom);
+  }
+
+  /**
+   * Returns the first key after every key starting with {@code prefix}, so that a key k starts with
+   * the prefix exactly when {@code prefix <= k < getRangeEnd(prefix)}.
+   */
+  public static String getRangeEnd(String prefix) {
+    // '4' comes right after the last digit, '3'.
+    return prefix + "4";
+  }
+
+  /**
+   * Returns the keys of the tiles at {@code zoom} that overlap the box between the given corners.
+   * A box with {@code west > east} crosses the antimeridian.
+   */
+  public static List<String> getCoveringQuadKeys(
+      double south, double west, double north, double east, int zoom) {
+    int minX = getTileX(west, zoom);
+    int maxX = getTileX(east, zoom);
+    // Tile rows count from the north.
+    int minY = getTileY(north, zoom);
+    int maxY = getTileY(south, zoom);
+
+    List<String> quadKeys = new ArrayList<>();
+    int tilesPerSide = 1 << zoom;
+    long columns = countColumns(west, east, zoom);
+    for (int column = 0; column < columns; column++) {
+      int x = (minX + column) % tilesPerSide;
+      for (int y = minY; y <= maxY; y++) {
+        quadKeys.add(toQuadKey(x, y, zoom));
+      }
+    }
+    return quadKeys;
+  }
+
+  /** Returns the number of tiles at {@code zoom} that overlap the box between the given corners. */
+  public static long countCoveringTiles(
+      double south, double west, double north, double east, int zoom) {
+    long rows = getTileY(south, zoom) - getTileY(north, zoom) + 1;
+    return countColumns(west, east, zoom) * rows;
+  }
+
+  /**
+   * Returns the number of tile columns at {@code zoom} from {@code west} east to {@code east}.
+   * Whether the box crosses the antimeridian is decided on the longitudes, since both edges can
+   * fall in the same column either way.
+   */
+  private static long countColumns(double west, double east, int zoom) {
+    int minX = getTileX(west, zoom);
+    int maxX = getTileX(east, zoom);
+    int tilesPerSide = 1 << zoom;
+    long columns = west <= east ? maxX - minX + 1 : tilesPerSide - minX + maxX + 1;
+    return Math.min(columns, tilesPerSide);
+  }
+
+  private static int getTileX(double lng, int zoom) {
+    int tilesPerSide = 1 << zoom;
+    int x = (int) Math.floor((lng + 180) / 360 * tilesPerSide);
+    return Math.max(0, Math.min(tilesPerSide - 1, x));
+  }
+
+  private static int getTileY(double lat, int zoom) {
+    int tilesPerSide = 1 << zoom;
+    double sinLat = Math.sin(Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat))));
+    double y = 0.5 - Math.log((1 + sinLat) / (1 - sinLat)) / (4 * Math.PI);
+    return Math.max(0, Math.min(tilesPerSide - 1, (int) Math.floor(y * tilesPerSide)));
+  }
+
+  private static String toQuadKey(int x, int y, int zoom) {
+    StringBuilder quadKey = new StringBuilder(zoom);
+    for (int level = zoom; level > 0; level--) {
+      int mask = 1 << (level - 1);
+      int digit = 0;
+      if ((x & mask) != 0) {
+        digit += 1;
+      }
+      if ((y & mask) != 0) {
+        digit += 2;
+      }
+      quadKey.append(digit);
+    }
+    return quadKey.toString();
+  }
+}
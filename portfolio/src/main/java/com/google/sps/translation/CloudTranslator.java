@@ -0,0 +1,77 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.translation;
+
+import com.google.cloud.translate.Translate;
+import com.google.cloud.translate.Translation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Translator backed by the Cloud Translation API. Texts are sent as multi-string requests of at most
+ * MAX_TEXTS_PER_REQUEST texts each, and the latency of every request is recorded.
+ */
+public final class CloudTranslator implements Translator {
+  private static final Logger logger = Logger.getLogger(CloudTranslator.class.getName());
+
+  // The v2 API accepts up to 128 text segments per request; stay below it.
+  private static final int MAX_TEXTS_PER_REQUEST = 100;
+
+  private final Translate translateService;
+  private final AtomicLong batchCount = new AtomicLong();
+  private final AtomicLong totalBatchLatencyNanos = new AtomicLong();
+
+  public CloudTranslator(Translate translateService) {
+    this.translateService = translateService;
+  }
+
+  @Override
+  public List<String> translate(List<String> texts, String languageCode) {
+    List<String> translatedTexts = new ArrayList<>(texts.size());
+    for (int start = 0; start < texts.size(); start += MAX_TEXTS_PER_REQUEST) {
+      List<String> batch = texts.subList(start, Math.min(start + MAX_TEXTS_PER_REQUEST, texts.size()));
+
+      long startNanos = System.nanoTime();
+      List<Translation> translations =
+          translateService.translate(batch, Translate.TranslateOption.targetLanguage(languageCode));
+      long latencyNanos = System.nanoTime() - startNanos;
+
+      batchCount.incrementAndGet();
+      totalBatchLatencyNanos.addAndGet(latencyNanos);
+      logger.fine(String.format("Translated a batch of %d texts to %s in %d ms.",
+          batch.size(), languageCode, TimeUnit.NANOSECONDS.toMillis(latencyNanos)));
+
+      // The API returns the translations in the order of the requested texts.
+      for (Translation translation : translations) {
+        translatedTexts.add(translation.getTranslatedText());
+      }
+    }
+    return translatedTexts;
+  }
+
+  /** Returns the number of translation requests sent so far. */
+  public long getBatchCount() {
+    return batchCount.get();
+  }
+
+  /** Returns the mean latency of the translation requests sent so far, in milliseconds. */
+  public double getAverageBatchLatencyMillis() {
+    long count = batchCount.get();
+    return count == 0 ? 0 : totalBatchLatencyNanos.get() / 1e6 / count;
+  }
+}
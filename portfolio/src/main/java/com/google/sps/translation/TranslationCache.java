@@ -0,0 +1,168 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.translation;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Text;
+import com.google.sps.DatastoreQueries;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier cache of comment translations keyed by (comment id, target language).
+ *
+ * <p>The first tier is an in-process LRU map. The second tier persists translations in Datastore
+ * as "CommentTranslation" entities whose parent is the translated comment and whose key name is the
+ * language code, so that all translations of a comment can be found with one ancestor query.
+ */
+public final class TranslationCache {
+  private static final String TRANSLATION_KIND = "CommentTranslation";
+  private static final String TRANSLATED_TEXT = "translatedText";
+  private static final int MAX_IN_MEMORY_ENTRIES = 2000;
+
+  private static final TranslationCache INSTANCE = new TranslationCache();
+
+  private final LinkedHashMap<String, String> inMemoryCache =
+      new LinkedHashMap<String, String>(16, 0.75f, /* accessOrder= */ true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+          return size() > MAX_IN_MEMORY_ENTRIES;
+        }
+      };
+
+  private final AtomicLong inMemoryHits = new AtomicLong();
+  private final AtomicLong datastoreHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  private TranslationCache() {}
+
+  public static TranslationCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the cached translations of the given comments into {@code languageCode}, keyed by comment
+   * id. Comments without a cached translation are absent from the returned map.
+   */
+  public Map<Long, String> getAll(Collection<Long> commentIds, String languageCode) {
+    Map<Long, String> translations = new HashMap<>();
+    List<Key> keysToLoad = new ArrayList<>();
+
+    synchronized (inMemoryCache) {
+      for (long commentId : commentIds) {
+        String translatedText = inMemoryCache.get(getCacheKey(commentId, languageCode));
+        if (translatedText != null) {
+          translations.put(commentId, translatedText);
+        } else {
+          keysToLoad.add(getTranslationKey(commentId, languageCode));
+        }
+      }
+    }
+    inMemoryHits.addAndGet(translations.size());
+
+    if (keysToLoad.isEmpty()) {
+      return translations;
+    }
+
+    // Fall back to the persisted tier with a single batch get, and promote what it has.
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Map<Key, Entity> entities = datastore.get(keysToLoad);
+    synchronized (inMemoryCache) {
+      for (Entity entity : entities.values()) {
+        long commentId = entity.getParent().getId();
+        String translatedText = ((Text) entity.getProperty(TRANSLATED_TEXT)).getValue();
+        translations.put(commentId, translatedText);
+        inMemoryCache.put(getCacheKey(commentId, languageCode), translatedText);
+      }
+    }
+    datastoreHits.addAndGet(entities.size());
+    misses.addAndGet(keysToLoad.size() - entities.size());
+
+    return translations;
+  }
+
+  /** Stores the given translations into {@code languageCode}, keyed by comment id, in both tiers. */
+  public void putAll(Map<Long, String> translations, String languageCode) {
+    if (translations.isEmpty()) {
+      return;
+    }
+
+    List<Entity> entities = new ArrayList<>();
+    synchronized (inMemoryCache) {
+      for (Map.Entry<Long, String> translation : translations.entrySet()) {
+        inMemoryCache.put(getCacheKey(translation.getKey(), languageCode), translation.getValue());
+
+        Entity entity = new Entity(getTranslationKey(translation.getKey(), languageCode));
+        entity.setUnindexedProperty(TRANSLATED_TEXT, new Text(translation.getValue()));
+        entities.add(entity);
+      }
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    datastore.put(entities);
+  }
+
+  /** Removes every cached translation of the comment with the given id. */
+  public void invalidate(long commentId) {
+    String cacheKeyPrefix = commentId + ":";
+    synchronized (inMemoryCache) {
+      inMemoryCache.keySet().removeIf(cacheKey -> cacheKey.startsWith(cacheKeyPrefix));
+    }
+
+    DatastoreQueries.deleteAll(new Query(TRANSLATION_KIND, KeyFactory.createKey("Comment", commentId)));
+  }
+
+  /** Removes every cached translation of every comment. */
+  public void invalidateAll() {
+    synchronized (inMemoryCache) {
+      inMemoryCache.clear();
+    }
+    DatastoreQueries.deleteAll(new Query(TRANSLATION_KIND));
+  }
+
+  /** Returns the number of lookups answered by the in-process tier. */
+  public long getInMemoryHits() {
+    return inMemoryHits.get();
+  }
+
+  /** Returns the number of lookups answered by the Datastore tier. */
+  public long getDatastoreHits() {
+    return datastoreHits.get();
+  }
+
+  /** Returns the number of lookups that neither tier could answer. */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  private static String getCacheKey(long commentId, String languageCode) {
+    return commentId + ":" + languageCode;
+  }
+
+  private static Key getTranslationKey(long commentId, String languageCode) {
+    return KeyFactory.createKey(
+        KeyFactory.createKey("Comment", commentId), TRANSLATION_KIND, languageCode);
+  }
+}
@@ -12,15 +12,15 @@
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
-package com.google.sps.data;
+package com.google.sps.translation;
 
-/** Represents a UFO sighting at a specific lat lng point. */
-public class UfoSighting {
-  private double lat;
-  private double lng;
+import java.util.List;
 
-  public UfoSighting(double lat, double lng) {
-    this.lat = lat;
-    this.lng = lng;
-  }
+/** Translates a list of texts into one target language. */
+public interface Translator {
+  /**
+   * Returns the translations of {@code texts} into the language represented by {@code languageCode},
+   * in the same order as {@code texts}.
+   */
+  List<String> translate(List<String> texts, String languageCode);
 }
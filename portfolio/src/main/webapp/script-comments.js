@@ -12,119 +12,97 @@
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
-/**
- * Creates the pagination bar such that the active page number is the previously active page number, unless it no longer exists. 
- * @param {number} numPages The total number of pages. 
- * @param {number} activePageNumber The previously active page number.
- * @return {number} The currently active page number.
- */
-function createPaginationBar(numPages, activePageNumber) {
-  // Set the currently active page number to 1 if the page associated with the previously active page number no longer exists.
-  if (activePageNumber > numPages) {
-    activePageNumber = 1;
-  }
-  
-  pageListElement = document.getElementById('page-list');
-  pageListElement.innerHTML = '';
+/** The opaque cursor from which the next page of comments starts, or null if all comments are loaded. */
+var nextCommentsCursor = null;
 
-  pageListElement.appendChild(createPageElement('Previous'));
-  for (var i = 1; i <= numPages; i++) {
-    pageListElement.appendChild(createPageElement(i, i == activePageNumber));
-  }
-  pageListElement.appendChild(createPageElement('Next'));
-
-  return activePageNumber;
-}
+/** Whether a page of comments is currently being fetched, so that scrolling doesn't fetch it twice. */
+var isLoadingComments = false;
 
 /**
- * Creates an <li> element for a page item in the pagination bar. 
- * @param {string} text The innerText of the <a> child element of the <li>.
- * @param {boolean} active Whether the created page item is active.
- * @return {!Element<li>} The page element created.
+ * Counts the times the comments list has been restarted, e.g. in another language, so that pages
+ * requested for an earlier list are dropped instead of being appended to the new one.
  */
-function createPageElement(text, active) {
-  const pageElement = document.createElement('li');
-  pageElement.className = 'page-item';
-  if (active) { 
-    pageElement.classList.add('active'); 
-  }
+var commentsListGeneration = 0;
 
-  const linkElement = document.createElement('a');
-  linkElement.className = 'page-link';
-  linkElement.innerText = text;
-
-  pageElement.appendChild(linkElement);
-  pageElement.addEventListener('click', event => loadPage(event));
-  return pageElement;
+/** 
+ * Fetches the first page of comments in the langauge specified, replacing the comments shown.
+ */
+function fetchTranslatedComments() {
+  const languageCode = document.getElementById('language').value;
+  fetchFirstPageComments(languageCode);
 }
 
 /**
- * Changes the active page element and displays comments on that page when a page element is clicked.
- * @param {!Event} event The click event that triggered the change in active page.
+ * Clears the comments list and fetches the first page of comments from the data server.
+ * @param {string=} languageCode The language in which the comments will be shown.
  */
-function loadPage(event) {
-  const currentPage = document.querySelector('.page-item.active');
-  const pageText = event.currentTarget.firstElementChild.innerText;
-  
-  if (pageText == 'Previous') {
-    if (currentPage.firstElementChild.innerText == 1) { 
-      // Current page is the first page, no previous page to open.
-      return; 
-    }
-    currentPage.previousSibling.classList.add('active');
-  } else if (pageText == 'Next') {
-    const numPages = document.querySelectorAll('#page-list li').length;
-    if (currentPage.firstElementChild.innerText == numPages - 2) { 
-      // Current page is the last page, no next page to open.
-      return; 
-    }
-    currentPage.nextSibling.classList.add('active');
-  } else {
-    event.currentTarget.classList.add('active');
-  }
-
-  currentPage.classList.remove('active');
-
-  // Fetch comments on that page without recreating pagination in the current language.
-  fetchTranslatedComments(false);
+function fetchFirstPageComments(languageCode = 'original') {
+  commentsListGeneration++;
+  nextCommentsCursor = null;
+  document.getElementById('comments-list').innerHTML = '';
+  fetchCommentsPage(languageCode);
 }
 
-/** 
- * Fetches the comments in the langauge specified. 
- * @param {boolean=} createNewPagination Whether a new pagination bar should be created.
+/**
+ * Fetches the page of comments after the ones already shown, if there is one and no fetch is in progress.
  */
-function fetchTranslatedComments(createNewPagination = false) {
-  const languageCode = document.getElementById('language').value;
-  fetchActivePageComments(createNewPagination, languageCode);
+function fetchNextPageComments() {
+  if (nextCommentsCursor == null || isLoadingComments) {
+    return;
+  }
+  fetchCommentsPage(document.getElementById('language').value, nextCommentsCursor);
 }
 
 /**
- * Fetches the comments from the data server and displays them on the currently active page.
- * @param {boolean=} createNewPagination Whether a new pagination bar should be created.
- * @param {string=} languageCode The language in which the comments will be shown.
+ * Fetches one page of comments from the data server and appends them to the comments list.
+ * @param {string} languageCode The language in which the comments will be shown.
+ * @param {string=} cursor The cursor returned with the previous page, or undefined for the first page.
  */
-function fetchActivePageComments(createNewPagination = false, languageCode = 'original') {
-  fetch('/comments?languageCode=' + languageCode).then(response => response.json()).then(comments => {
-    const commentsListElement = document.getElementById('comments-list');
-    commentsListElement.innerHTML = '';
+function fetchCommentsPage(languageCode, cursor) {
+  const commentsPerPageElement = document.getElementById('num-comments-per-page');
+  const commentsPerPage = commentsPerPageElement.options[commentsPerPageElement.selectedIndex].value;
 
-    const commentsPerPageElement = document.getElementById('num-comments-per-page');
-    const commentsPerPage = commentsPerPageElement.options[commentsPerPageElement.selectedIndex].value;
+  const params = new URLSearchParams();
+  params.append('languageCode', languageCode);
+  params.append('limit', commentsPerPage);
+  params.append('includeNicknames', 'true');
+  if (cursor) {
+    params.append('cursor', cursor);
+  }
 
-    const currentPage = document.querySelector('.page-item.active');
-    var currentPageNumber = currentPage.firstElementChild.innerText;
-    if (createNewPagination) {
-      currentPageNumber = createPaginationBar(Math.ceil(comments.length / commentsPerPage), currentPageNumber);
+  const generation = commentsListGeneration;
+  isLoadingComments = true;
+  fetch('/comments?' + params.toString()).then(response => response.json()).then(page => {
+    if (generation != commentsListGeneration) {
+      return;  // The list was restarted while this page was loading.
     }
+    const commentsListElement = document.getElementById('comments-list');
+    page.comments.forEach((comment) => {
+      commentsListElement.appendChild(createCommentElement(comment));
+    });
+    nextCommentsCursor = page.nextCursor || null;
+    isLoadingComments = false;
 
-    const startIndex = (currentPageNumber - 1) * commentsPerPage;
-    const endIndex = Math.min(Number(commentsPerPage) + Number(startIndex), comments.length);
-    for (var i = startIndex; i < endIndex; i++) {
-      commentsListElement.appendChild(createCommentElement(comments[i]));
+    // Keep loading while the list is too short to scroll, so that later pages stay reachable.
+    if (isNearPageBottom()) {
+      fetchNextPageComments();
+    }
+  }).catch(() => {
+    if (generation == commentsListGeneration) {
+      isLoadingComments = false;
     }
   });
 }
 
+/**
+ * Returns whether the user has scrolled close enough to the bottom of the page to load more comments.
+ * @return {boolean}
+ */
+function isNearPageBottom() {
+  const scrollThreshold = 200;  // In pixels.
+  return window.innerHeight + window.pageYOffset >= document.body.offsetHeight - scrollThreshold;
+}
+
 /**
  * Creates an <li> element containing a comment, including the username, content, time, and delete button.
  * @param {!Comment} comment The Comment object from which a <li> element is created.
@@ -133,14 +111,20 @@ function fetchActivePageComments(createNewPagination = false, languageCode = 'or
 function createCommentElement(comment) {
   const commentElement = document.createElement('li');
   commentElement.className = 'comment';
+  commentElement.dataset.commentId = comment.id;
 
   const commentContainer = document.createElement('div');
 
   const nameElement = document.createElement('strong');
   nameElement.className = 'text-success';
-  fetch('/nickname?userId=' + comment.userId).then(response => response.text()).then(displayName => {
-    nameElement.innerHTML = displayName + ' - ' + comment.mood;
-  });
+  // The display name is embedded in the comment when the page asked for it; look it up otherwise.
+  if (comment.nickname != null) {
+    nameElement.innerHTML = comment.nickname + ' - ' + comment.mood;
+  } else {
+    fetch('/nickname?userId=' + comment.userId).then(response => response.text()).then(displayName => {
+      nameElement.innerHTML = displayName + ' - ' + comment.mood;
+    });
+  }
 
   const timeElement = document.createElement('span');
   timeElement.className = 'pull-right text-muted';  // Add Bootstrap classes to style the timeElement.
@@ -169,7 +153,8 @@ function createCommentElement(comment) {
 
   const sentimentScoreSpan = document.createElement('span');
   sentimentScoreSpan.className = 'sentiment';
-  sentimentScoreSpan.innerText = 'Sentiment Score: ' + comment.sentiment;
+  // The sentiment is missing while the server is still scoring the comment, or if it couldn't.
+  sentimentScoreSpan.innerText = 'Sentiment Score: ' + (comment.sentiment == null ? 'not available' : comment.sentiment);
 
   const deleteButton = document.createElement('button');
   deleteButton.className = 'delete-btn';
@@ -185,6 +170,57 @@ function createCommentElement(comment) {
   return commentElement;
 }
 
+/**
+ * Listens for comments being posted or deleted, from this page or elsewhere, and updates the comments
+ * list in place. The server sends an event with type 'reset' when the list has to be reloaded.
+ */
+function listenForCommentEvents() {
+  if (!window.EventSource) {
+    return;
+  }
+  const eventSource = new EventSource('/comment-events');
+  eventSource.addEventListener('created', (event) => addNewComment(JSON.parse(event.data)));
+  eventSource.addEventListener('deleted', (event) => removeComment(JSON.parse(event.data).id));
+  eventSource.addEventListener('reset', () => fetchTranslatedComments());
+}
+
+/**
+ * Adds a newly posted comment to the top of the comments list, unless it is already shown.
+ * @param {!Comment} comment The new comment, in its original language.
+ */
+function addNewComment(comment) {
+  if (findCommentElement(comment.id) != null) {
+    return;
+  }
+  // The event carries the original text; reload the list if it is shown in another language.
+  if (document.getElementById('language').value != 'original') {
+    fetchTranslatedComments();
+    return;
+  }
+  const commentsListElement = document.getElementById('comments-list');
+  commentsListElement.insertBefore(createCommentElement(comment), commentsListElement.firstChild);
+}
+
+/**
+ * Removes the comment with the given id from the comments list, if it is shown.
+ * @param {number} commentId
+ */
+function removeComment(commentId) {
+  const commentElement = findCommentElement(commentId);
+  if (commentElement != null) {
+    commentElement.remove();
+  }
+}
+
+/**
+ * Returns the <li> element of the comment with the given id, or null if it isn't shown.
+ * @param {number} commentId
+ * @return {?Element<li>}
+ */
+function findCommentElement(commentId) {
+  return document.querySelector('#comments-list li[data-comment-id="' + commentId + '"]');
+}
+
 /**
  * Converts a timestamp in milliseconds to a formatted date/time string.
  * @param {string} timestamp The timestamp to be converted. 
@@ -210,7 +246,7 @@ function convertToDateTime(timestamp) {
 /** Tells the server to delete all comments data in the Datastore. */
 function deleteAllComments() {
   const responsePromise = fetch('/delete-comments', {method: 'POST'});
-  responsePromise.then(fetchActivePageComments);
+  responsePromise.then(() => fetchFirstPageComments());
 }
 
 /** 
@@ -264,10 +300,17 @@ function fetchBlobstoreUrl() {
 
 /** 
  * Checks log in status to set up comments.html when the page is loading. 
- * Fetches all the comments and displays them. Fetches the blobstore URL.
+ * Fetches the first page of comments and loads more as the user scrolls, and keeps them up to date as
+ * comments are posted and deleted. Fetches the blobstore URL.
  */
 function initiateCommentsPage() {
   setupPageByLoginStatus()
-  fetchActivePageComments(true);
+  fetchFirstPageComments();
   fetchBlobstoreUrl();
+  listenForCommentEvents();
+  window.addEventListener('scroll', () => {
+    if (isNearPageBottom()) {
+      fetchNextPageComments();
+    }
+  });
 }
@@ -18,6 +18,9 @@ const flagIcon = 'https://developers.google.com/maps/documentation/javascript/ex
 /* Editable marker that displays when a user clicks in the map. */
 let editMarker;
 
+/* Markers and clusters fetched for the current viewport, replaced when the viewport changes. */
+let fetchedMarkers = [];
+
 /** Creates a map that shows travel markers and allows user to input markers. */
 function createMap() {
   map = new google.maps.Map(
@@ -45,7 +48,8 @@ function createMap() {
       38.642805, -90.195679,
       'I worked here during summer, 2019.', 'St Louis', false);
 
-  fetchMarkers();
+  // Fetch the markers in view whenever the user stops panning or zooming.
+  map.addListener('idle', fetchMarkers);
 }
 
 /** 
@@ -55,6 +59,7 @@ function createMap() {
  * @param {string} content The description of the marker, which is displayed onclick.
  * @param {string=} title Optional title of the marker, which is displayed on hover.
  * @param {boolean=} defaultIcon Whether to display the default marker icon or the flagIcon. 
+ * @return {!google.maps.Marker} The marker added.
  */
 function createMarkerForDisplay(lat, lng, content, title = '', defaultIcon = true) {
   let marker;
@@ -70,14 +75,40 @@ function createMarkerForDisplay(lat, lng, content, title = '', defaultIcon = tru
   marker.addListener('click', () => {
     infoWindow.open(map, marker);
   });
+  return marker;
+}
+
+/**
+ * Adds a marker labeled with the number of markers it stands for, which zooms in on it when clicked.
+ * @param {number} lat Latitude of the centroid of the markers.
+ * @param {number} lng Longitude of the centroid of the markers.
+ * @param {number} count The number of markers in the cluster.
+ * @return {!google.maps.Marker} The marker added.
+ */
+function createClusterForDisplay(lat, lng, count) {
+  const marker = new google.maps.Marker(
+      {position: {lat: lat, lng: lng}, map: map, label: String(count)});
+  marker.addListener('click', () => {
+    map.setZoom(map.getZoom() + 2);
+    map.panTo(marker.getPosition());
+  });
+  return marker;
 }
 
-/** Fetches markers from the backend and adds them to the map. */
+/**
+ * Fetches the markers in the current viewport from the backend, clustered when zoomed out, and
+ * replaces the ones shown before.
+ */
 function fetchMarkers() {
-  fetch('/markers').then(response => response.json()).then((markers) => {
-    markers.forEach(
-        (marker) => {
-            createMarkerForDisplay(marker.lat, marker.lng, marker.content)});
+  const params = new URLSearchParams();
+  params.append('bbox', map.getBounds().toUrlValue());
+  params.append('zoom', map.getZoom());
+
+  fetch('/markers?' + params.toString()).then(response => response.json()).then((markers) => {
+    fetchedMarkers.forEach((marker) => marker.setMap(null));
+    fetchedMarkers = markers.map((marker) => marker.count != null
+        ? createClusterForDisplay(marker.lat, marker.lng, marker.count)
+        : createMarkerForDisplay(marker.lat, marker.lng, marker.content));
   });
 }
 
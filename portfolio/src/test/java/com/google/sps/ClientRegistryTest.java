@@ -0,0 +1,136 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.cloud.language.v1.Document;
+import com.google.cloud.language.v1.LanguageServiceClient;
+import com.google.cloud.language.v1.LanguageServiceSettings;
+import io.grpc.Attributes;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerTransportFilter;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Compares creating a Natural Language client for every request, as the servlets used to, with
+ * the client shared through ClientRegistry, against a stand-in served over local TCP.
+ */
+@RunWith(JUnit4.class)
+public final class ClientRegistryTest {
+  private static final int REQUESTS = 50;
+  private static final Document DOCUMENT =
+      Document.newBuilder().setContent("Hello").setType(Document.Type.PLAIN_TEXT).build();
+
+  private final AtomicInteger connections = new AtomicInteger();
+  private Server server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = NettyServerBuilder.forPort(0)
+        .addService(FakeLanguageService.newServiceDefinition(content -> 0.5f, content -> {}))
+        .addTransportFilter(new ServerTransportFilter() {
+          @Override
+          public Attributes transportReady(Attributes attributes) {
+            connections.incrementAndGet();
+            return attributes;
+          }
+        })
+        .build()
+        .start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    ClientRegistry.setLanguageServiceSettings(null);
+    server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void sharedClientReusesItsConnection() throws Exception {
+    ClientRegistry.setLanguageServiceSettings(newSettings(newChannel()));
+    // Warm up both paths, so that class loading isn't timed.
+    analyze(ClientRegistry.getLanguageServiceClient());
+    try (LanguageServiceClient client = LanguageServiceClient.create(newSettings(newChannel()))) {
+      analyze(client);
+    }
+    connections.set(0);
+
+    long sharedNanos = System.nanoTime();
+    for (int i = 0; i < REQUESTS; i++) {
+      Assert.assertEquals(0.5f, analyze(ClientRegistry.getLanguageServiceClient()), 0);
+    }
+    sharedNanos = System.nanoTime() - sharedNanos;
+    int sharedConnections = connections.getAndSet(0);
+
+    long perRequestNanos = System.nanoTime();
+    for (int i = 0; i < REQUESTS; i++) {
+      try (LanguageServiceClient client = LanguageServiceClient.create(newSettings(newChannel()))) {
+        Assert.assertEquals(0.5f, analyze(client), 0);
+      }
+    }
+    perRequestNanos = System.nanoTime() - perRequestNanos;
+    int perRequestConnections = connections.get();
+
+    System.out.println(String.format(
+        "%d requests: shared client %.1f ms with %d new connections, "
+            + "client per request %.1f ms with %d new connections.",
+        REQUESTS, sharedNanos / 1e6, sharedConnections, perRequestNanos / 1e6,
+        perRequestConnections));
+    // The shared client stays connected from the warm-up; every new client connects again.
+    Assert.assertEquals(0, sharedConnections);
+    Assert.assertEquals(REQUESTS, perRequestConnections);
+  }
+
+  @Test
+  public void newSettingsReplaceTheSharedClient() throws Exception {
+    ClientRegistry.setLanguageServiceSettings(newSettings(newChannel()));
+    LanguageServiceClient first = ClientRegistry.getLanguageServiceClient();
+    Assert.assertSame(first, ClientRegistry.getLanguageServiceClient());
+
+    ClientRegistry.setLanguageServiceSettings(newSettings(newChannel()));
+
+    Assert.assertTrue(first.isShutdown());
+    Assert.assertNotSame(first, ClientRegistry.getLanguageServiceClient());
+  }
+
+  private static float analyze(LanguageServiceClient client) {
+    return client.analyzeSentiment(DOCUMENT).getDocumentSentiment().getScore();
+  }
+
+  /** Returns a new plaintext channel to the stand-in, which connects on its first call. */
+  private ManagedChannel newChannel() {
+    return NettyChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+  }
+
+  private static LanguageServiceSettings newSettings(ManagedChannel channel) throws Exception {
+    return LanguageServiceSettings.newBuilder()
+        .setCredentialsProvider(NoCredentialsProvider.create())
+        .setTransportChannelProvider(
+            FixedTransportChannelProvider.create(GrpcTransportChannel.create(channel)))
+        .build();
+  }
+}
@@ -0,0 +1,166 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityTranslator;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.PropertyProjection;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Supplier;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Checks the query helpers and compares what the comment mood count reads through each of them with
+ * the full entities it used to read, against the local datastore.
+ */
+@RunWith(JUnit4.class)
+public final class DatastoreQueriesTest {
+  private static final int COMMENTS = 2000;
+  private static final int ROUNDS = 10;
+
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void keysOnlyQueryReturnsEveryKey() {
+    List<Key> putKeys = putComments(50);
+
+    List<Key> keys = DatastoreQueries.getKeys(new Query("Comment"));
+
+    Assert.assertEquals(new HashSet<>(putKeys), new HashSet<>(keys));
+  }
+
+  @Test
+  public void projectionFillsInOnlyTheProjectedProperties() {
+    putComments(50);
+
+    List<Entity> entities = DatastoreQueries.getProjection(
+        new Query("Comment"), new PropertyProjection("mood", String.class));
+
+    Assert.assertEquals(50, entities.size());
+    for (Entity entity : entities) {
+      Assert.assertEquals(1, entity.getProperties().size());
+      Assert.assertTrue(entity.getProperty("mood") instanceof String);
+    }
+  }
+
+  @Test
+  public void deleteAllDeletesInBatches() {
+    putComments(DatastoreQueries.MAX_BATCH_SIZE * 2 + 1);
+
+    Assert.assertEquals(
+        DatastoreQueries.MAX_BATCH_SIZE * 2 + 1, DatastoreQueries.deleteAll(new Query("Comment")));
+    Assert.assertTrue(DatastoreQueries.getKeys(new Query("Comment")).isEmpty());
+  }
+
+  @Test
+  public void projectionAndKeysOnlyReadLessThanFullEntities() {
+    putComments(COMMENTS);
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+
+    Supplier<List<Entity>> full =
+        () -> datastore.prepare(new Query("Comment")).asList(FetchOptions.Builder.withDefaults());
+    Supplier<List<Entity>> projection = () -> DatastoreQueries.getProjection(
+        new Query("Comment"), new PropertyProjection("mood", String.class));
+    Supplier<List<Key>> keysOnly = () -> DatastoreQueries.getKeys(new Query("Comment"));
+
+    long fullBytes = countBytes(full.get());
+    long projectionBytes = countBytes(projection.get());
+    List<Entity> keyEntities = new ArrayList<>();
+    for (Key key : keysOnly.get()) {
+      keyEntities.add(new Entity(key));
+    }
+    long keysOnlyBytes = countBytes(keyEntities);
+    long fullNanos = time(full);
+    long projectionNanos = time(projection);
+    long keysOnlyNanos = time(keysOnly);
+
+    System.out.println(String.format(
+        "%d comments: full entities %d bytes in %.1f ms, mood projection %d bytes in %.1f ms, "
+            + "keys only %d bytes in %.1f ms.",
+        COMMENTS, fullBytes, fullNanos / 1e6 / ROUNDS, projectionBytes,
+        projectionNanos / 1e6 / ROUNDS, keysOnlyBytes, keysOnlyNanos / 1e6 / ROUNDS));
+    // Timings on the local datastore are only printed; the bytes read are what it reports reliably.
+    Assert.assertTrue(projectionBytes * 4 < fullBytes);
+    Assert.assertTrue(keysOnlyBytes < projectionBytes);
+  }
+
+  /** Stores {@code count} comments shaped like the ones CommentsServlet writes. */
+  private static List<Key> putComments(int count) {
+    String[] moods = {"happy", "sad", "neutral"};
+    StringBuilder content = new StringBuilder();
+    while (content.length() < 400) {
+      content.append("A comment long enough to look like a real one. ");
+    }
+    List<Entity> commentEntities = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      Entity commentEntity = new Entity("Comment");
+      commentEntity.setProperty("userId", "user-" + (i % 37));
+      commentEntity.setProperty("mood", moods[i % moods.length]);
+      commentEntity.setProperty("content", content.toString() + i);
+      commentEntity.setProperty("blobkey", null);
+      commentEntity.setProperty("sentiment", 0.5);
+      commentEntity.setProperty("timestamp", 1577836800000L + i);
+      commentEntities.add(commentEntity);
+    }
+    return DatastoreServiceFactory.getDatastoreService().put(commentEntities);
+  }
+
+  /** Returns the size of the entities as the datastore encodes them. */
+  private static long countBytes(List<Entity> entities) {
+    long bytes = 0;
+    for (Entity entity : entities) {
+      bytes += EntityTranslator.convertToPb(entity).toByteArray().length;
+    }
+    return bytes;
+  }
+
+  /**
+   * Returns the nanoseconds ROUNDS runs of {@code query} take, after one run to warm up. Asking for
+   * the size makes the lazy lists fetch every result.
+   */
+  private static long time(Supplier<? extends List<?>> query) {
+    Assert.assertEquals(COMMENTS, query.get().size());
+    long nanos = System.nanoTime();
+    for (int i = 0; i < ROUNDS; i++) {
+      Assert.assertEquals(COMMENTS, query.get().size());
+    }
+    return System.nanoTime() - nanos;
+  }
+}
@@ -0,0 +1,123 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.cloud.language.v1.AnalyzeSentimentRequest;
+import com.google.cloud.language.v1.AnalyzeSentimentResponse;
+import com.google.cloud.language.v1.LanguageServiceSettings;
+import com.google.cloud.language.v1.Sentiment;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ServerCalls;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A local stand-in for the Natural Language API's AnalyzeSentiment method. It scores each document
+ * with a function given by the test, which can throw a StatusRuntimeException to fail the call.
+ *
+ * <p>{@link #install} serves it in process and points {@link ClientRegistry} at it until
+ * {@link #close}.
+ */
+public final class FakeLanguageService implements AutoCloseable {
+  private static final String SERVICE_NAME = "google.cloud.language.v1.LanguageService";
+
+  private static final MethodDescriptor<AnalyzeSentimentRequest, AnalyzeSentimentResponse>
+      ANALYZE_SENTIMENT =
+          MethodDescriptor.<AnalyzeSentimentRequest, AnalyzeSentimentResponse>newBuilder()
+              .setType(MethodDescriptor.MethodType.UNARY)
+              .setFullMethodName(
+                  MethodDescriptor.generateFullMethodName(SERVICE_NAME, "AnalyzeSentiment"))
+              .setRequestMarshaller(
+                  ProtoUtils.marshaller(AnalyzeSentimentRequest.getDefaultInstance()))
+              .setResponseMarshaller(
+                  ProtoUtils.marshaller(AnalyzeSentimentResponse.getDefaultInstance()))
+              .build();
+
+  private final List<String> analyzedContents = new CopyOnWriteArrayList<>();
+  private final Server server;
+  private final ManagedChannel channel;
+
+  private FakeLanguageService(Function<String, Float> scorer) throws IOException {
+    String serverName = InProcessServerBuilder.generateName();
+    server = InProcessServerBuilder.forName(serverName)
+        .addService(newServiceDefinition(scorer, analyzedContents::add))
+        .directExecutor()
+        .build()
+        .start();
+    channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+  }
+
+  /**
+   * Starts a stand-in that scores documents with {@code scorer} and makes ClientRegistry's
+   * Natural Language client use it.
+   */
+  public static FakeLanguageService install(Function<String, Float> scorer) throws IOException {
+    FakeLanguageService service = new FakeLanguageService(scorer);
+    ClientRegistry.setLanguageServiceSettings(
+        LanguageServiceSettings.newBuilder()
+            .setCredentialsProvider(NoCredentialsProvider.create())
+            .setTransportChannelProvider(
+                FixedTransportChannelProvider.create(GrpcTransportChannel.create(service.channel)))
+            .build());
+    return service;
+  }
+
+  /**
+   * Returns the definition of a service that scores documents with {@code scorer}, after passing
+   * their content to {@code onRequest}, for tests that serve it themselves.
+   */
+  public static ServerServiceDefinition newServiceDefinition(
+      Function<String, Float> scorer, Consumer<String> onRequest) {
+    return ServerServiceDefinition.builder(SERVICE_NAME)
+        .addMethod(ANALYZE_SENTIMENT, ServerCalls.asyncUnaryCall((request, responseObserver) -> {
+          String content = request.getDocument().getContent();
+          onRequest.accept(content);
+          try {
+            Sentiment sentiment = Sentiment.newBuilder().setScore(scorer.apply(content)).build();
+            responseObserver.onNext(
+                AnalyzeSentimentResponse.newBuilder().setDocumentSentiment(sentiment).build());
+            responseObserver.onCompleted();
+          } catch (RuntimeException e) {
+            responseObserver.onError(e);
+          }
+        }))
+        .build();
+  }
+
+  /** Returns the contents of the documents analyzed so far, in order. */
+  public List<String> getAnalyzedContents() {
+    return analyzedContents;
+  }
+
+  /** Stops the stand-in and puts ClientRegistry back on its defaults. */
+  @Override
+  public void close() {
+    ClientRegistry.setLanguageServiceSettings(null);
+    channel.shutdownNow();
+    server.shutdownNow();
+  }
+}
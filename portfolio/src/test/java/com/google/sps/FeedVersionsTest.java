@@ -0,0 +1,158 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+
+@RunWith(JUnit4.class)
+public final class FeedVersionsTest {
+  private static final String KIND = FeedVersions.COMMENTS;
+
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalMemcacheServiceTestConfig());
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void versionIsLeftOutUntilItSettles() {
+    FeedVersions.bump(KIND);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+
+    Assert.assertFalse(FeedVersions.checkNotModified(KIND, newRequest("*"), response));
+
+    verify(response, never()).setHeader(eq("ETag"), anyString());
+    verify(response, never()).setStatus(anyInt());
+    verify(response).setHeader("Cache-Control", "no-cache");
+  }
+
+  @Test
+  public void settledVersionIsSentAndMatched() {
+    FeedVersions.bump(KIND);
+    settle();
+
+    String etag = getETag(null);
+
+    Assert.assertEquals("\"" + KIND + "-" + FeedVersions.getVersion(KIND) + "\"", etag);
+    for (String ifNoneMatch : new String[] {etag, "W/" + etag, "\"other\", " + etag, "*"}) {
+      HttpServletResponse response = mock(HttpServletResponse.class);
+      Assert.assertTrue(FeedVersions.checkNotModified(KIND, newRequest(ifNoneMatch), response));
+      verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    }
+  }
+
+  @Test
+  public void bumpStopsTheOldETagMatching() {
+    FeedVersions.bump(KIND);
+    settle();
+    String oldETag = getETag(null);
+
+    FeedVersions.bump(KIND);
+
+    // Until the bump settles the old ETag gets the full response, and no new ETag is handed out.
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    Assert.assertFalse(FeedVersions.checkNotModified(KIND, newRequest(oldETag), response));
+    verify(response, never()).setHeader(eq("ETag"), anyString());
+
+    settle();
+    String newETag = getETag(oldETag);
+    Assert.assertNotEquals(oldETag, newETag);
+  }
+
+  @Test
+  public void evictedBumpTimeWaitsAFullSettleTime() {
+    FeedVersions.bump(KIND);
+    settle();
+    getMemcache().delete(KIND + FeedVersions.BUMPED_SUFFIX);
+
+    Assert.assertNull(FeedVersions.getSettledVersion(KIND));
+    Assert.assertNull(FeedVersions.getSettledVersion(KIND));
+    settle();
+    Assert.assertEquals(Long.valueOf(FeedVersions.getVersion(KIND)),
+        FeedVersions.getSettledVersion(KIND));
+  }
+
+  @Test
+  public void kindsHaveTheirOwnVersions() {
+    FeedVersions.bump(FeedVersions.MARKERS);
+    FeedVersions.bump(KIND);
+    settle();
+    long markersVersion = FeedVersions.getVersion(FeedVersions.MARKERS);
+
+    FeedVersions.bump(KIND);
+
+    Assert.assertEquals(markersVersion, FeedVersions.getVersion(FeedVersions.MARKERS));
+    Assert.assertEquals(Long.valueOf(markersVersion),
+        FeedVersions.getSettledVersion(FeedVersions.MARKERS));
+    Assert.assertNull(FeedVersions.getSettledVersion(KIND));
+  }
+
+  /** Moves every kind's last bump back by SETTLE_MILLIS, as if that much time had passed. */
+  private static void settle() {
+    MemcacheService memcache = getMemcache();
+    for (String kind : new String[] {FeedVersions.COMMENTS, FeedVersions.MARKERS}) {
+      Long bumpedMillis = (Long) memcache.get(kind + FeedVersions.BUMPED_SUFFIX);
+      if (bumpedMillis != null) {
+        memcache.put(kind + FeedVersions.BUMPED_SUFFIX, bumpedMillis - FeedVersions.SETTLE_MILLIS);
+      }
+    }
+  }
+
+  /** Returns the ETag sent for KIND to a request with {@code ifNoneMatch}, which must not match. */
+  private static String getETag(String ifNoneMatch) {
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    Assert.assertFalse(FeedVersions.checkNotModified(KIND, newRequest(ifNoneMatch), response));
+    ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+    verify(response).setHeader(eq("ETag"), etag.capture());
+    return etag.getValue();
+  }
+
+  private static HttpServletRequest newRequest(String ifNoneMatch) {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getHeader("If-None-Match")).thenReturn(ifNoneMatch);
+    return request;
+  }
+
+  private static MemcacheService getMemcache() {
+    return MemcacheServiceFactory.getMemcacheService(FeedVersions.MEMCACHE_NAMESPACE);
+  }
+}
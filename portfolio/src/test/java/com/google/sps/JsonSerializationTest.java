@@ -0,0 +1,76 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.Gson;
+import com.google.sps.data.Comment;
+import com.google.sps.data.Marker;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Checks that the hand-written adapters match the JSON reflection would produce and read. */
+@RunWith(JUnit4.class)
+public final class JsonSerializationTest {
+  private static final Comment COMMENT =
+      new Comment(42, "user1", "happy", "Hello \"there\"", "blob", 0.25f, 1577836800000L, "Nick");
+
+  @Test
+  public void commentMatchesReflectiveJson() {
+    Comment pending = new Comment(42, "user1", "happy", "Hello", null, null, 1577836800000L, null);
+
+    Assert.assertEquals(new Gson().toJson(COMMENT), JsonSerialization.GSON.toJson(COMMENT));
+    Assert.assertEquals(new Gson().toJson(pending), JsonSerialization.GSON.toJson(pending));
+  }
+
+  @Test
+  public void commentRoundTrips() {
+    String json = JsonSerialization.GSON.toJson(COMMENT);
+
+    Comment actual = JsonSerialization.GSON.fromJson(json, Comment.class);
+
+    Assert.assertEquals(json, JsonSerialization.GSON.toJson(actual));
+  }
+
+  @Test
+  public void commentReadsExplicitNullsAndSkipsUnknownFields() {
+    String json = "{\"id\":7,\"mood\":null,\"sentiment\":null,\"timestamp\":5,\"extra\":[1,2]}";
+
+    Comment comment = JsonSerialization.GSON.fromJson(json, Comment.class);
+
+    Assert.assertEquals(7, comment.getId());
+    Assert.assertNull(comment.getMood());
+    Assert.assertNull(comment.getSentiment());
+    Assert.assertEquals(5, comment.getTimestamp());
+  }
+
+  @Test
+  public void markerRoundTrips() {
+    Marker marker = new Marker(1.5, -2.25, "Here");
+    String json = JsonSerialization.GSON.toJson(marker);
+
+    Assert.assertEquals(new Gson().toJson(marker), json);
+    Assert.assertEquals(json,
+        JsonSerialization.GSON.toJson(JsonSerialization.GSON.fromJson(json, Marker.class)));
+  }
+
+  @Test
+  public void nullsAreWrittenAndReadAsJsonNull() {
+    Assert.assertEquals("null", JsonSerialization.GSON.toJson(null, Comment.class));
+    Assert.assertNull(JsonSerialization.GSON.fromJson("null", Comment.class));
+    Assert.assertNull(JsonSerialization.GSON.fromJson("null", Marker.class));
+  }
+}
@@ -0,0 +1,173 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.google.sps.data.Marker;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Checks that JsonStreams writes as it iterates, and that a 50 MB list goes out under a heap too
+ * small to hold it, which building the whole list and JSON string first does not.
+ */
+@RunWith(JUnit4.class)
+public final class JsonStreamsTest {
+  private static final String HEAP = "-Xmx32m";
+  private static final int PAYLOAD_BYTES = 50 * 1024 * 1024;
+  private static final int CONTENT_LENGTH = 1000;
+
+  @Test
+  public void writesTheSameJsonAsGson() throws Exception {
+    List<Marker> markers = Arrays.asList(
+        new Marker(1.5, -2.25, "First"), new Marker(0, 0, null), new Marker(-90, 180, "\"Last\""));
+    StringWriter body = new StringWriter();
+    JsonWriter writer = JsonSerialization.GSON.newJsonWriter(body);
+
+    JsonStreams.writeArray(writer, markers, marker -> marker);
+    writer.flush();
+
+    Assert.assertEquals(JsonSerialization.GSON.toJson(markers), body.toString());
+  }
+
+  @Test
+  public void writesBeforeTheLastElementIsProduced() throws Exception {
+    StringWriter body = new StringWriter();
+    JsonWriter writer = JsonSerialization.GSON.newJsonWriter(body);
+    int[] writtenWhenLastProduced = new int[1];
+    Iterable<Integer> sources = () -> new Iterator<Integer>() {
+      private int next = 0;
+
+      @Override
+      public boolean hasNext() {
+        return next < 1000;
+      }
+
+      @Override
+      public Integer next() {
+        if (next == 999) {
+          writtenWhenLastProduced[0] = body.getBuffer().length();
+        }
+        return next++;
+      }
+    };
+
+    JsonStreams.writeArray(writer, sources, i -> new Marker(i, i, "Marker " + i));
+    writer.flush();
+
+    JsonArray markers = JsonParser.parseString(body.toString()).getAsJsonArray();
+    Assert.assertEquals(1000, markers.size());
+    // Most of the array was already out by the time the last element was produced.
+    Assert.assertTrue(writtenWhenLastProduced[0] > body.getBuffer().length() / 2);
+  }
+
+  @Test
+  public void streamsLargePayloadUnderConstrainedHeap() throws Exception {
+    Assert.assertEquals(0, runWithConstrainedHeap("stream"));
+  }
+
+  @Test
+  public void bufferedPayloadDoesNotFitTheSameHeap() throws Exception {
+    // Shows that the heap really is too small for the payload.
+    Assert.assertNotEquals(0, runWithConstrainedHeap("buffer"));
+  }
+
+  /** Runs PayloadWriter in a new JVM limited to HEAP and returns its exit code. */
+  private static int runWithConstrainedHeap(String mode) throws Exception {
+    String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    Process process = new ProcessBuilder(java, HEAP, "-XX:-HeapDumpOnOutOfMemoryError",
+            "-cp", System.getProperty("java.class.path"), PayloadWriter.class.getName(), mode)
+        .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+        .redirectError(new File("target/" + JsonStreamsTest.class.getSimpleName() + "-" + mode
+            + ".log"))
+        .start();
+    Assert.assertTrue(process.waitFor(2, TimeUnit.MINUTES));
+    return process.exitValue();
+  }
+
+  /**
+   * Writes about PAYLOAD_BYTES of markers as JSON to a writer that only counts characters, either
+   * streamed through JsonStreams or, like the servlets used to, built as a list and then a string.
+   */
+  public static final class PayloadWriter {
+    public static void main(String[] args) throws IOException {
+      CountingWriter out = new CountingWriter();
+      Iterable<Marker> markers = () -> new Iterator<Marker>() {
+        private int next = 0;
+
+        @Override
+        public boolean hasNext() {
+          return next < PAYLOAD_BYTES / CONTENT_LENGTH;
+        }
+
+        @Override
+        public Marker next() {
+          char[] content = new char[CONTENT_LENGTH];
+          Arrays.fill(content, (char) ('a' + next % 26));
+          return new Marker(next, next++, new String(content));
+        }
+      };
+
+      if (args[0].equals("stream")) {
+        JsonWriter writer = JsonSerialization.GSON.newJsonWriter(out);
+        JsonStreams.writeArray(writer, markers, marker -> marker);
+        writer.flush();
+      } else {
+        List<Marker> markerList = new ArrayList<>();
+        markers.forEach(markerList::add);
+        out.write(JsonSerialization.GSON.toJson(markerList));
+      }
+      System.out.println(String.format("Wrote %.1f MB of JSON (%s).", out.count / 1e6, args[0]));
+      if (out.count < PAYLOAD_BYTES) {
+        System.exit(2);
+      }
+    }
+  }
+
+  /** A writer that drops what it's given and only counts the characters. */
+  private static final class CountingWriter extends Writer {
+    private long count = 0;
+
+    @Override
+    public void write(char[] buffer, int offset, int length) {
+      count += length;
+    }
+
+    @Override
+    public void write(String string) {
+      count += string.length();
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+  }
+}
@@ -0,0 +1,123 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.mood;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class MoodCounterTest {
+  private static final String[] MOODS = {"happy", "sad", "excited"};
+
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void countsMatchRebuiltCountsAfterPostsAndDeletes() {
+    List<Key> commentKeys = new ArrayList<>();
+    for (int i = 0; i < 60; i++) {
+      commentKeys.add(postComment(MOODS[i % MOODS.length]));
+    }
+    // Delete every "sad" comment and some of the others, and one comment twice.
+    for (int i = 0; i < 60; i++) {
+      if (i % MOODS.length == 1 || i % 5 == 0) {
+        MoodCounter.deleteComment(commentKeys.get(i));
+      }
+    }
+    Assert.assertNull(MoodCounter.deleteComment(commentKeys.get(0)));
+
+    Map<String, Long> expected = new HashMap<>();
+    expected.put("happy", 16L);
+    expected.put("excited", 16L);
+    Assert.assertEquals(expected, MoodCounter.getCounts());
+    Assert.assertEquals(expected, MoodCounter.rebuild());
+    Assert.assertEquals(expected, MoodCounter.getCounts());
+  }
+
+  @Test
+  public void commentsWithoutMoodAreNotCounted() {
+    postComment("happy");
+    postComment(null);
+    Key nullMoodKey = postComment(null);
+    Entity noMoodProperty = new Entity("Comment");
+    MoodCounter.putComment(noMoodProperty);
+    MoodCounter.deleteComment(nullMoodKey);
+    MoodCounter.deleteComment(noMoodProperty.getKey());
+    Entity anotherNoMoodProperty = new Entity("Comment");
+    MoodCounter.putComment(anotherNoMoodProperty);
+
+    Map<String, Long> expected = new HashMap<>();
+    expected.put("happy", 1L);
+    Assert.assertEquals(expected, MoodCounter.getCounts());
+    Assert.assertEquals(expected, MoodCounter.rebuild());
+    Assert.assertEquals(expected, MoodCounter.getCounts());
+  }
+
+  @Test
+  public void rebuildReplacesWrongShards() {
+    postComment("happy");
+    postComment("happy");
+    // A shard left behind for a mood that no comment has, and a wrong count for "happy".
+    putShard("sad", 3, 5);
+    putShard("happy", 7, 40);
+
+    Map<String, Long> actual = MoodCounter.rebuild();
+
+    Map<String, Long> expected = new HashMap<>();
+    expected.put("happy", 2L);
+    Assert.assertEquals(expected, actual);
+    Assert.assertEquals(expected, MoodCounter.getCounts());
+  }
+
+  private static Key postComment(String mood) {
+    Entity commentEntity = new Entity("Comment");
+    commentEntity.setProperty("mood", mood);
+    MoodCounter.putComment(commentEntity);
+    return commentEntity.getKey();
+  }
+
+  private static void putShard(String mood, int shardIndex, long count) {
+    Entity shard = new Entity(KeyFactory.createKey("MoodCountShard", mood + "#" + shardIndex));
+    shard.setProperty("mood", mood);
+    shard.setProperty("count", count);
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    datastore.put(shard);
+  }
+}
@@ -0,0 +1,195 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.sentiment;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.taskqueue.dev.LocalTaskQueue;
+import com.google.appengine.api.taskqueue.dev.QueueStateInfo.TaskStateInfo;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalTaskQueueTestConfig;
+import com.google.sps.FakeLanguageService;
+import io.grpc.Status;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class SentimentScorerTest {
+  private static final String QUEUE_NAME = "sentiment";
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper(
+      new LocalDatastoreServiceTestConfig(), new LocalMemcacheServiceTestConfig(),
+      new LocalTaskQueueTestConfig()
+          .setQueueXmlPath("src/main/webapp/WEB-INF/queue.xml")
+          .setDisableAutoTaskExecution(true));
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void submitQueuesATask() {
+    Assert.assertTrue(SentimentScorer.submit(42));
+
+    List<TaskStateInfo> tasks = getTasks();
+    Assert.assertEquals(1, tasks.size());
+    Assert.assertEquals(SentimentScorer.TASK_URL, tasks.get(0).getUrl());
+    Assert.assertEquals("id=42", tasks.get(0).getBody());
+  }
+
+  @Test
+  public void sweepQueuesPendingCommentsInBatches() {
+    List<Entity> comments = new ArrayList<>();
+    for (int i = 0; i < 60; i++) {
+      comments.add(newComment(true));
+    }
+    for (int i = 0; i < 3; i++) {
+      comments.add(newComment(false));
+    }
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    datastore.put(comments);
+
+    Assert.assertEquals(60, SentimentScorer.enqueuePendingComments());
+
+    List<Integer> batchSizes = new ArrayList<>();
+    for (TaskStateInfo task : getTasks()) {
+      batchSizes.add(task.getBody().split("&").length);
+    }
+    batchSizes.sort(null);
+    Assert.assertEquals(Arrays.asList(10, 25, 25), batchSizes);
+  }
+
+  @Test
+  public void scoringSkipsMissingAndScoredComments() throws Exception {
+    Entity scoredComment = newComment(false);
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    datastore.put(scoredComment);
+
+    // Neither comment needs the Natural Language API, so nothing is sent to it.
+    SentimentScorer.scoreComments(Arrays.asList(scoredComment.getKey().getId(), 12345L));
+
+    Entity storedComment = datastore.get(scoredComment.getKey());
+    Assert.assertEquals(0.5, (double) storedComment.getProperty(SentimentScorer.SENTIMENT), 0);
+  }
+
+  @Test
+  public void scoresEachCommentOnItsOwn() throws Exception {
+    Entity positive = newPendingComment("Great!");
+    Entity imageOnly = newPendingComment(null);
+    Entity blank = newPendingComment("  ");
+    Entity unavailable = newPendingComment("Try again later");
+    Entity rejected = newPendingComment("Rejected");
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    datastore.put(Arrays.asList(positive, imageOnly, blank, unavailable, rejected));
+    List<Long> commentIds = new ArrayList<>();
+    for (Entity comment : Arrays.asList(positive, imageOnly, blank, unavailable, rejected)) {
+      commentIds.add(comment.getKey().getId());
+    }
+
+    boolean[] available = {false};
+    try (FakeLanguageService languageService = FakeLanguageService.install(content -> {
+      if (content.equals("Rejected")) {
+        throw Status.INVALID_ARGUMENT.asRuntimeException();
+      }
+      if (content.equals("Try again later") && !available[0]) {
+        throw Status.INTERNAL.asRuntimeException();
+      }
+      return 0.75f;
+    })) {
+      Assert.assertEquals(1, SentimentScorer.scoreComments(commentIds));
+
+      // Empty comments never reach the API, and the failure didn't hold back the others.
+      Assert.assertEquals(Arrays.asList("Great!", "Rejected", "Try again later"),
+          sorted(languageService.getAnalyzedContents()));
+      assertScored(positive, 0.75);
+      assertScored(imageOnly, 0);
+      assertScored(blank, 0);
+      assertPending(unavailable);
+      Entity storedRejected = datastore.get(rejected.getKey());
+      Assert.assertFalse(storedRejected.hasProperty(SentimentScorer.SENTIMENT_PENDING));
+      Assert.assertFalse(storedRejected.hasProperty(SentimentScorer.SENTIMENT));
+
+      // A retry of the whole task only scores what is still pending.
+      available[0] = true;
+      languageService.getAnalyzedContents().clear();
+      Assert.assertEquals(0, SentimentScorer.scoreComments(commentIds));
+      Assert.assertEquals(
+          Arrays.asList("Try again later"), languageService.getAnalyzedContents());
+      assertScored(unavailable, 0.75);
+    }
+  }
+
+  private static void assertScored(Entity comment, double expectedScore) throws Exception {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Entity storedComment = datastore.get(comment.getKey());
+    Assert.assertFalse(storedComment.hasProperty(SentimentScorer.SENTIMENT_PENDING));
+    Assert.assertEquals(
+        expectedScore, (double) storedComment.getProperty(SentimentScorer.SENTIMENT), 0);
+  }
+
+  private static void assertPending(Entity comment) throws Exception {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Entity storedComment = datastore.get(comment.getKey());
+    Assert.assertTrue(storedComment.hasProperty(SentimentScorer.SENTIMENT_PENDING));
+    Assert.assertFalse(storedComment.hasProperty(SentimentScorer.SENTIMENT));
+  }
+
+  private static List<String> sorted(List<String> strings) {
+    List<String> copy = new ArrayList<>(strings);
+    Collections.sort(copy);
+    return copy;
+  }
+
+  private static Entity newPendingComment(String content) {
+    Entity commentEntity = new Entity("Comment");
+    commentEntity.setProperty("content", content);
+    commentEntity.setProperty(SentimentScorer.SENTIMENT_PENDING, true);
+    return commentEntity;
+  }
+
+  /** Returns a comment that is waiting to be scored, or one that already has a score. */
+  private static Entity newComment(boolean pending) {
+    Entity commentEntity = new Entity("Comment");
+    commentEntity.setProperty("content", "Hello");
+    if (pending) {
+      commentEntity.setProperty(SentimentScorer.SENTIMENT_PENDING, true);
+    } else {
+      commentEntity.setProperty(SentimentScorer.SENTIMENT, 0.5);
+    }
+    return commentEntity;
+  }
+
+  private static List<TaskStateInfo> getTasks() {
+    LocalTaskQueue taskQueue = LocalTaskQueueTestConfig.getLocalTaskQueue();
+    return taskQueue.getQueueStateInfo().get(QUEUE_NAME).getTaskInfo();
+  }
+}
@@ -0,0 +1,180 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Text;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.apphosting.api.ApiProxy;
+import com.google.sps.events.CommentEventLog;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class CommentEventsServletTest {
+  private static final String RETRY = "retry: 5000\n\n";
+  private static final int LISTENERS = 1000;
+  private static final int THREADS = 50;
+
+  private final LocalServiceTestHelper helper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+  private long now;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    now = System.currentTimeMillis();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void newListenerStartsAtNewestSettledEvent() throws Exception {
+    putEvent(now - 60_000, CommentEventLog.DELETED, "{\"id\": 1}");
+    putEvent(now - 30_000, CommentEventLog.DELETED, "{\"id\": 2}");
+    // Not settled yet, so a query might not find it.
+    putEvent(now - 100, CommentEventLog.DELETED, "{\"id\": 3}");
+
+    Assert.assertEquals(RETRY + "id: " + (now - 30_000) + "\n\n", getEvents(null));
+  }
+
+  @Test
+  public void listenerOnEmptyLogGetsEveryLaterEvent() throws Exception {
+    Assert.assertEquals(RETRY + "id: 0\n\n", getEvents(null));
+
+    putEvent(now - 5000, CommentEventLog.DELETED, "{\"id\": 1}");
+
+    Assert.assertEquals(
+        RETRY + "id: " + (now - 5000) + "\nevent: deleted\ndata: {\"id\": 1}\n\n", getEvents("0"));
+  }
+
+  @Test
+  public void listenerGetsSettledEventsSinceItsLastOne() throws Exception {
+    putEvent(now - 30_000, CommentEventLog.DELETED, "{\"id\": 1}");
+    putEvent(now - 20_000, CommentEventLog.DELETED, "{\"id\": 2}");
+    putEvent(now - 100, CommentEventLog.DELETED, "{\"id\": 3}");
+
+    String expected = RETRY
+        + "id: " + (now - 30_000) + "\nevent: deleted\ndata: {\"id\": 1}\n\n"
+        + "id: " + (now - 20_000) + "\nevent: deleted\ndata: {\"id\": 2}\n\n";
+    Assert.assertEquals(expected, getEvents(String.valueOf(now - 30_000)));
+  }
+
+  @Test
+  public void listenerPastRetentionIsReset() throws Exception {
+    String lastEventId = String.valueOf(now - CommentEventLog.RETENTION_MILLIS - 60_000);
+
+    Assert.assertTrue(getEvents(lastEventId).contains("event: reset\n"));
+  }
+
+  @Test
+  public void thousandConcurrentListenersEachGetEveryEvent() throws Exception {
+    putEvent(now - 60_000, CommentEventLog.DELETED, "{\"id\": 1}");
+
+    String firstBody = RETRY + "id: " + (now - 60_000) + "\n\n";
+    for (String body : getEventsConcurrently(null)) {
+      Assert.assertEquals(firstBody, body);
+    }
+
+    putEvent(now - 10_000, CommentEventLog.DELETED, "{\"id\": 2}");
+    putEvent(now - 5000, CommentEventLog.DELETED, "{\"id\": 3}");
+
+    String expected = RETRY
+        + "id: " + (now - 60_000) + "\nevent: deleted\ndata: {\"id\": 1}\n\n"
+        + "id: " + (now - 10_000) + "\nevent: deleted\ndata: {\"id\": 2}\n\n"
+        + "id: " + (now - 5000) + "\nevent: deleted\ndata: {\"id\": 3}\n\n";
+    long nanos = System.nanoTime();
+    List<String> bodies = getEventsConcurrently(String.valueOf(now - 60_000));
+    nanos = System.nanoTime() - nanos;
+
+    System.out.println(String.format(
+        "%d listeners reconnected in %.1f ms.", LISTENERS, nanos / 1e6));
+    Assert.assertEquals(LISTENERS, bodies.size());
+    for (String body : bodies) {
+      Assert.assertEquals(expected, body);
+    }
+  }
+
+  /**
+   * Sends LISTENERS requests with the same Last-Event-ID from a pool of threads, and returns the
+   * bodies sent back.
+   */
+  private static List<String> getEventsConcurrently(String lastEventId) throws Exception {
+    // The local services are reached through the test thread's environment.
+    ApiProxy.Environment environment = ApiProxy.getCurrentEnvironment();
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Callable<String>> listeners = new ArrayList<>();
+      for (int i = 0; i < LISTENERS; i++) {
+        listeners.add(() -> {
+          ApiProxy.setEnvironmentForCurrentThread(environment);
+          return getEvents(lastEventId);
+        });
+      }
+      List<String> bodies = new ArrayList<>();
+      for (Future<String> body : executor.invokeAll(listeners)) {
+        bodies.add(body.get());
+      }
+      return bodies;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static void putEvent(long timestamp, String type, String data) {
+    Entity event = new Entity("CommentEvent");
+    event.setUnindexedProperty("type", type);
+    event.setUnindexedProperty("data", new Text(data));
+    event.setProperty("timestamp", timestamp);
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    datastore.put(event);
+  }
+
+  /** Returns the body sent to a listener whose last event has the given id, or null if none. */
+  private static String getEvents(String lastEventId) throws Exception {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getHeader("Last-Event-ID")).thenReturn(lastEventId);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    StringWriter body = new StringWriter();
+    when(response.getWriter()).thenReturn(new PrintWriter(body));
+
+    new CommentEventsServlet().doGet(request, response);
+    return body.toString();
+  }
+}
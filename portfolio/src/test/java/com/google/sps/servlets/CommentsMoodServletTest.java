@@ -0,0 +1,90 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalUserServiceTestConfig;
+import com.google.sps.mood.MoodCounter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class CommentsMoodServletTest {
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper(
+      new LocalDatastoreServiceTestConfig(), new LocalMemcacheServiceTestConfig(),
+      new LocalUserServiceTestConfig())
+      .setEnvAuthDomain("example.com")
+      .setEnvEmail("user@example.com")
+      .setEnvIsLoggedIn(true);
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    // A comment that the shards don't count yet, so that a rebuild shows up in the counts.
+    Entity commentEntity = new Entity("Comment");
+    commentEntity.setProperty("mood", "happy");
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    datastore.put(commentEntity);
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void rebuildIsForbiddenToOtherUsers() throws Exception {
+    helper.setEnvIsAdmin(false);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+
+    new CommentsMoodServlet().doPost(mock(HttpServletRequest.class), response);
+
+    verify(response).sendError(eq(HttpServletResponse.SC_FORBIDDEN), anyString());
+    Assert.assertTrue(MoodCounter.getCounts().isEmpty());
+  }
+
+  @Test
+  public void adminCanRebuild() throws Exception {
+    helper.setEnvIsAdmin(true);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+
+    new CommentsMoodServlet().doPost(mock(HttpServletRequest.class), response);
+
+    verify(response, never()).sendError(anyInt(), anyString());
+    Assert.assertEquals(Long.valueOf(1), MoodCounter.getCounts().get("happy"));
+  }
+}
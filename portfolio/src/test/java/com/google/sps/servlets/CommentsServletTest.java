@@ -0,0 +1,330 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.apphosting.api.ApiProxy;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.nickname.NicknameCache;
+import com.google.sps.translation.FakeTranslator;
+import com.google.sps.translation.TranslationCache;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class CommentsServletTest {
+  private static final int PAGE_SIZE = 10;
+  private static final String LANGUAGE_CODE = "fr";
+  private static final String LANGUAGE_CODE_ORIGINAL = "original";
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper(
+      new LocalDatastoreServiceTestConfig(), new LocalMemcacheServiceTestConfig());
+
+  private final FakeTranslator translator = new FakeTranslator();
+  private final CommentsServlet servlet = new CommentsServlet(translator);
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    // The in-memory tier outlives each test's local Datastore.
+    TranslationCache.getInstance().invalidateAll();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void pagesAreNewestFirstAndFollowTheCursor() throws Exception {
+    putComments(0, 25);
+
+    JsonObject firstPage = getPage(LANGUAGE_CODE_ORIGINAL, null);
+    JsonArray firstComments = firstPage.getAsJsonArray("comments");
+    Assert.assertEquals(PAGE_SIZE, firstComments.size());
+    Assert.assertEquals(24, getTimestamp(firstComments, 0));
+    Assert.assertEquals(15, getTimestamp(firstComments, PAGE_SIZE - 1));
+
+    JsonObject secondPage =
+        getPage(LANGUAGE_CODE_ORIGINAL, firstPage.get("nextCursor").getAsString());
+    JsonArray secondComments = secondPage.getAsJsonArray("comments");
+    Assert.assertEquals(PAGE_SIZE, secondComments.size());
+    Assert.assertEquals(14, getTimestamp(secondComments, 0));
+
+    JsonObject lastPage =
+        getPage(LANGUAGE_CODE_ORIGINAL, secondPage.get("nextCursor").getAsString());
+    Assert.assertEquals(5, lastPage.getAsJsonArray("comments").size());
+    Assert.assertFalse(lastPage.has("nextCursor"));
+  }
+
+  @Test
+  public void translatesCacheMissesInOneCallInPageOrder() throws Exception {
+    List<Entity> comments = putComments(0, 15);
+    // Cache translations of the comments with odd timestamps only.
+    Map<Long, String> cachedTranslations = new HashMap<>();
+    for (Entity comment : comments) {
+      if ((long) comment.getProperty("timestamp") % 2 == 1) {
+        cachedTranslations.put(
+            comment.getKey().getId(), "Cached " + comment.getProperty("content"));
+      }
+    }
+    TranslationCache.getInstance().putAll(cachedTranslations, LANGUAGE_CODE);
+
+    JsonArray page = getPage(LANGUAGE_CODE, null).getAsJsonArray("comments");
+
+    Assert.assertEquals(PAGE_SIZE, page.size());
+    List<String> missedContents = new ArrayList<>();
+    for (int i = 0; i < PAGE_SIZE; i++) {
+      long timestamp = 14 - i;
+      String content = "Comment " + timestamp;
+      String expected = timestamp % 2 == 1
+          ? "Cached " + content
+          : FakeTranslator.translationOf(content, LANGUAGE_CODE);
+      Assert.assertEquals(expected, page.get(i).getAsJsonObject().get("content").getAsString());
+      if (timestamp % 2 == 0) {
+        missedContents.add(content);
+      }
+    }
+    Assert.assertEquals(Arrays.asList(missedContents), translator.getCalls());
+
+    // The new translations are cached, so the same page is served without translating again.
+    getPage(LANGUAGE_CODE, null);
+    Assert.assertEquals(1, translator.getCalls().size());
+  }
+
+  @Test
+  public void missingLanguageServesOriginalComments() throws Exception {
+    putComments(0, 1);
+
+    for (String languageCode : Arrays.asList(null, "")) {
+      JsonArray page = getPage(languageCode, null).getAsJsonArray("comments");
+      Assert.assertEquals("Comment 0", page.get(0).getAsJsonObject().get("content").getAsString());
+    }
+    Assert.assertTrue(translator.getCalls().isEmpty());
+  }
+
+  @Test
+  public void pageCostDoesNotGrowWithCommentCount() throws Exception {
+    putComments(0, 100);
+    long smallAllocation = measureAllocation();
+    int smallPageLength = getPageBody(LANGUAGE_CODE_ORIGINAL, null).length();
+
+    putComments(100, 100_000);
+    long largeAllocation = measureAllocation();
+    int largePageLength = getPageBody(LANGUAGE_CODE_ORIGINAL, null).length();
+
+    // Reading the first page of 100,000 comments should cost about as much as of 100. The bounds
+    // leave room for longer contents and cursors, but not for anything proportional to the count.
+    Assert.assertTrue("Allocated " + largeAllocation + " bytes, against " + smallAllocation,
+        largeAllocation < 2 * smallAllocation);
+    Assert.assertTrue("Sent " + largePageLength + " characters, against " + smallPageLength,
+        largePageLength < 2 * smallPageLength);
+  }
+
+  @Test
+  public void embeddedNicknamesSaveRoundTrips() throws Exception {
+    putComments(0, 25);
+    for (int i = 0; i < 10; i++) {
+      NicknameCache.putNickname("user" + i, "Nickname " + i);
+    }
+    NicknameServlet nicknameServlet = new NicknameServlet();
+
+    // Before: the page, then one /nickname request for each comment on it.
+    MemcacheServiceFactory.getMemcacheService().clearAll();
+    Map<String, String> fetchedNicknames = new HashMap<>();
+    int requests;
+    int apiCallsBefore;
+    try (ApiCallCounter apiCalls = new ApiCallCounter()) {
+      JsonArray page = getPage(LANGUAGE_CODE_ORIGINAL, null, false).getAsJsonArray("comments");
+      for (JsonElement comment : page) {
+        String userId = comment.getAsJsonObject().get("userId").getAsString();
+        fetchedNicknames.put(userId, getNickname(nicknameServlet, userId));
+      }
+      requests = 1 + page.size();
+      apiCallsBefore = apiCalls.getCount();
+    }
+
+    // After: the page alone, with the nicknames embedded.
+    MemcacheServiceFactory.getMemcacheService().clearAll();
+    Map<String, String> embeddedNicknames = new HashMap<>();
+    int embeddedRequests;
+    int apiCallsAfter;
+    try (ApiCallCounter apiCalls = new ApiCallCounter()) {
+      JsonArray page = getPage(LANGUAGE_CODE_ORIGINAL, null, true).getAsJsonArray("comments");
+      for (JsonElement comment : page) {
+        JsonObject commentObject = comment.getAsJsonObject();
+        embeddedNicknames.put(
+            commentObject.get("userId").getAsString(), commentObject.get("nickname").getAsString());
+      }
+      embeddedRequests = 1;
+      apiCallsAfter = apiCalls.getCount();
+    }
+
+    System.out.println(String.format(
+        "One page of %d comments: %d requests and %d API calls one nickname at a time, "
+            + "%d request and %d API calls with embedded nicknames.",
+        PAGE_SIZE, requests, apiCallsBefore, embeddedRequests, apiCallsAfter));
+    Assert.assertEquals(fetchedNicknames, embeddedNicknames);
+    Assert.assertEquals(1 + PAGE_SIZE, requests);
+    Assert.assertEquals(1, embeddedRequests);
+    Assert.assertTrue(apiCallsAfter < apiCallsBefore);
+  }
+
+  private static String getNickname(NicknameServlet servlet, String userId) throws Exception {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getParameter("userId")).thenReturn(userId);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    StringWriter body = new StringWriter();
+    when(response.getWriter()).thenReturn(new PrintWriter(body));
+
+    servlet.doGet(request, response);
+    return body.toString().trim();
+  }
+
+  /** Returns the bytes allocated by this thread to serve one page, after a warm-up request. */
+  private long measureAllocation() throws Exception {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    getPageBody(LANGUAGE_CODE_ORIGINAL, null);
+    long before = threads.getThreadAllocatedBytes(threadId);
+    getPageBody(LANGUAGE_CODE_ORIGINAL, null);
+    return threads.getThreadAllocatedBytes(threadId) - before;
+  }
+
+  private static long getTimestamp(JsonArray comments, int index) {
+    return comments.get(index).getAsJsonObject().get("timestamp").getAsLong();
+  }
+
+  /** Stores and returns comments with timestamps from {@code from} to {@code to}, exclusive. */
+  private static List<Entity> putComments(int from, int to) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    List<Entity> comments = new ArrayList<>();
+    List<Entity> batch = new ArrayList<>();
+    for (int i = from; i < to; i++) {
+      Entity comment = new Entity("Comment");
+      comment.setProperty("userId", "user" + (i % 10));
+      comment.setProperty("mood", "happy");
+      comment.setProperty("content", "Comment " + i);
+      comment.setProperty("timestamp", (long) i);
+      comments.add(comment);
+      batch.add(comment);
+      if (batch.size() == 500) {
+        datastore.put(batch);
+        batch.clear();
+      }
+    }
+    datastore.put(batch);
+    return comments;
+  }
+
+  /** Returns the page of comments in {@code languageCode} that starts at {@code cursor}. */
+  private JsonObject getPage(String languageCode, String cursor) throws Exception {
+    return getPage(languageCode, cursor, false);
+  }
+
+  /** Returns a page of comments, with their authors' nicknames if asked. */
+  private JsonObject getPage(String languageCode, String cursor, boolean includeNicknames)
+      throws Exception {
+    return JsonParser.parseString(getPageBody(languageCode, cursor, includeNicknames))
+        .getAsJsonObject();
+  }
+
+  /** Returns the body sent for the page of comments in {@code languageCode} from {@code cursor}. */
+  private String getPageBody(String languageCode, String cursor) throws Exception {
+    return getPageBody(languageCode, cursor, false);
+  }
+
+  /** Returns the body of a page of comments, with their authors' nicknames if asked. */
+  private String getPageBody(String languageCode, String cursor, boolean includeNicknames)
+      throws Exception {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getParameter("languageCode")).thenReturn(languageCode);
+    when(request.getParameter("includeNicknames")).thenReturn(String.valueOf(includeNicknames));
+    when(request.getParameter("limit")).thenReturn(String.valueOf(PAGE_SIZE));
+    when(request.getParameter("cursor")).thenReturn(cursor);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    StringWriter body = new StringWriter();
+    when(response.getWriter()).thenReturn(new PrintWriter(body));
+
+    servlet.doGet(request, response);
+    return body.toString();
+  }
+
+  /**
+   * Counts the App Engine API calls, such as Datastore and Memcache RPCs, made until it's closed.
+   * The local services' delegate is put back on close, as the helper expects it when tearing down.
+   */
+  private static final class ApiCallCounter implements AutoCloseable {
+    private final ApiProxy.Delegate<ApiProxy.Environment> delegate;
+    private final AtomicInteger count = new AtomicInteger();
+
+    @SuppressWarnings("unchecked")
+    ApiCallCounter() {
+      delegate = ApiProxy.getDelegate();
+      ApiProxy.setDelegate((ApiProxy.Delegate<ApiProxy.Environment>) Proxy.newProxyInstance(
+          ApiProxy.Delegate.class.getClassLoader(), new Class<?>[] {ApiProxy.Delegate.class},
+          (proxy, method, args) -> {
+            if (method.getName().equals("makeSyncCall")
+                || method.getName().equals("makeAsyncCall")) {
+              count.incrementAndGet();
+            }
+            try {
+              return method.invoke(delegate, args);
+            } catch (InvocationTargetException e) {
+              throw e.getCause();
+            }
+          }));
+    }
+
+    int getCount() {
+      return count.get();
+    }
+
+    @Override
+    public void close() {
+      ApiProxy.setDelegate(delegate);
+    }
+  }
+}
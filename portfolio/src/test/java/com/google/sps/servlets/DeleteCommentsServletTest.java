@@ -0,0 +1,168 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.taskqueue.dev.LocalTaskQueue;
+import com.google.appengine.api.taskqueue.dev.QueueStateInfo.TaskStateInfo;
+import com.google.appengine.tools.development.testing.LocalBlobstoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalTaskQueueTestConfig;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.mood.MoodCounter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class DeleteCommentsServletTest {
+  private static final String CURSOR_PARAMETER = "cursor=";
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper(
+      new LocalDatastoreServiceTestConfig(), new LocalMemcacheServiceTestConfig(),
+      new LocalBlobstoreServiceTestConfig(),
+      new LocalTaskQueueTestConfig()
+          .setQueueXmlPath("src/main/webapp/WEB-INF/queue.xml")
+          .setDisableAutoTaskExecution(true));
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void fewCommentsAreDeletedInOneRequest() throws Exception {
+    putComments(30);
+    MoodCounter.rebuild();
+
+    JsonObject progress = deleteAll(null);
+
+    Assert.assertEquals(30, progress.get("deletedComments").getAsInt());
+    Assert.assertEquals(1, progress.get("deletedBlobs").getAsInt());
+    Assert.assertTrue(progress.get("done").getAsBoolean());
+    Assert.assertTrue(getTasks().isEmpty());
+    Assert.assertEquals(0, countComments());
+    Assert.assertTrue(MoodCounter.getCounts().isEmpty());
+  }
+
+  @Test
+  public void tasksContinueFromTheCursorAndCountEachCommentOnce() throws Exception {
+    // More than one request deletes, so that the rest is left to a task.
+    int total = 10250;
+    putComments(total);
+
+    List<JsonObject> requests = new ArrayList<>();
+    String cursor = null;
+    do {
+      requests.add(deleteAll(cursor));
+      List<TaskStateInfo> tasks = getTasks();
+      cursor = null;
+      if (tasks.size() == requests.size()) {
+        String body = tasks.get(tasks.size() - 1).getBody();
+        Assert.assertTrue(body.startsWith(CURSOR_PARAMETER));
+        cursor = URLDecoder.decode(body.substring(CURSOR_PARAMETER.length()), "UTF-8");
+      }
+    } while (cursor != null);
+
+    int deletedComments = 0;
+    int deletedBlobs = 0;
+    for (JsonObject progress : requests) {
+      deletedComments += progress.get("deletedComments").getAsInt();
+      deletedBlobs += progress.get("deletedBlobs").getAsInt();
+    }
+    Assert.assertEquals(2, requests.size());
+    Assert.assertFalse(requests.get(0).get("done").getAsBoolean());
+    Assert.assertTrue(requests.get(1).get("done").getAsBoolean());
+    Assert.assertEquals(total, deletedComments);
+    Assert.assertEquals((total + 99) / 100, deletedBlobs);
+    Assert.assertEquals(0, countComments());
+  }
+
+  @Test
+  public void invalidCursorIsRejected() throws Exception {
+    putComments(1);
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getParameter("cursor")).thenReturn("*");
+    HttpServletResponse response = mock(HttpServletResponse.class);
+
+    new DeleteCommentsServlet().doPost(request, response);
+
+    verify(response).sendError(eq(HttpServletResponse.SC_BAD_REQUEST), anyString());
+    Assert.assertEquals(1, countComments());
+  }
+
+  /** Stores {@code count} comments, every hundredth with an image. */
+  private static void putComments(int count) {
+    List<Entity> commentEntities = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      Entity commentEntity = new Entity("Comment");
+      commentEntity.setProperty("mood", "happy");
+      commentEntity.setProperty("content", "Comment " + i);
+      commentEntity.setProperty("blobkey", i % 100 == 0 ? "blob-" + i : null);
+      commentEntities.add(commentEntity);
+    }
+    DatastoreServiceFactory.getDatastoreService().put(commentEntities);
+  }
+
+  private static JsonObject deleteAll(String cursor) throws Exception {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getParameter("cursor")).thenReturn(cursor);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    StringWriter body = new StringWriter();
+    when(response.getWriter()).thenReturn(new PrintWriter(body));
+
+    new DeleteCommentsServlet().doPost(request, response);
+
+    return JsonParser.parseString(body.toString()).getAsJsonObject();
+  }
+
+  private static int countComments() {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    return datastore.prepare(new Query("Comment")).countEntities(FetchOptions.Builder.withDefaults());
+  }
+
+  private static List<TaskStateInfo> getTasks() {
+    LocalTaskQueue taskQueue = LocalTaskQueueTestConfig.getLocalTaskQueue();
+    return taskQueue.getQueueStateInfo().get("default").getTaskInfo();
+  }
+}
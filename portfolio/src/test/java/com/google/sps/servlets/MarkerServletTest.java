@@ -0,0 +1,208 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.data.Marker;
+import com.google.sps.tiles.QuadKeys;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class MarkerServletTest {
+  // A box around lower Manhattan.
+  private static final String MANHATTAN = "40.70,-74.02,40.72,-74.00";
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper(
+      new LocalDatastoreServiceTestConfig(), new LocalMemcacheServiceTestConfig());
+
+  private MarkerServlet servlet;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    // The servlet builds a Datastore key as it's created, which needs the local services.
+    servlet = new MarkerServlet();
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void boxReturnsOnlyTheMarkersInIt() throws Exception {
+    servlet.storeMarker(new Marker(40.705, -74.015, "Inside 1"));
+    servlet.storeMarker(new Marker(40.715, -74.005, "Inside 2"));
+    // Just past the east edge, likely in the same tiles as the box.
+    servlet.storeMarker(new Marker(40.71, -73.999, "East of the box"));
+    servlet.storeMarker(new Marker(51.5, -0.12, "London"));
+
+    JsonArray markers = getMarkers(MANHATTAN, 15);
+
+    Assert.assertEquals(setOf("Inside 1", "Inside 2"), getContents(markers));
+  }
+
+  @Test
+  public void boxAcrossTheAntimeridianFindsBothSides() throws Exception {
+    servlet.storeMarker(new Marker(-17.7, 178.1, "Fiji"));
+    servlet.storeMarker(new Marker(-13.8, -171.8, "Samoa"));
+    servlet.storeMarker(new Marker(-21.1, 55.5, "Reunion"));
+
+    JsonArray markers = getMarkers("-25,170,-10,-165", 12);
+
+    Assert.assertEquals(setOf("Fiji", "Samoa"), getContents(markers));
+  }
+
+  @Test
+  public void nearbyMarkersAreClusteredBelowZoom12() throws Exception {
+    servlet.storeMarker(new Marker(40.7100, -74.0100, "A"));
+    servlet.storeMarker(new Marker(40.7101, -74.0101, "B"));
+    servlet.storeMarker(new Marker(40.7102, -74.0102, "C"));
+    servlet.storeMarker(new Marker(34.05, -118.24, "Los Angeles"));
+
+    JsonArray markers = getMarkers("30,-125,45,-70", 5);
+
+    Assert.assertEquals(2, markers.size());
+    JsonObject cluster = null;
+    JsonObject single = null;
+    for (JsonElement marker : markers) {
+      if (marker.getAsJsonObject().has("count")) {
+        cluster = marker.getAsJsonObject();
+      } else {
+        single = marker.getAsJsonObject();
+      }
+    }
+    Assert.assertEquals(3, cluster.get("count").getAsInt());
+    Assert.assertEquals(40.7101, cluster.get("lat").getAsDouble(), 1e-9);
+    Assert.assertEquals(-74.0101, cluster.get("lng").getAsDouble(), 1e-9);
+    Assert.assertEquals("Los Angeles", single.get("content").getAsString());
+  }
+
+  @Test
+  public void markersAreNotClusteredFromZoom12() throws Exception {
+    servlet.storeMarker(new Marker(40.7100, -74.0100, "A"));
+    servlet.storeMarker(new Marker(40.7101, -74.0101, "B"));
+
+    JsonArray markers = getMarkers(MANHATTAN, 12);
+
+    Assert.assertEquals(setOf("A", "B"), getContents(markers));
+  }
+
+  @Test
+  public void wideBoxQueriesFewerCoarserTiles() throws Exception {
+    // At zoom 20 this box covers far more tiles than the servlet queries, so it zooms them out.
+    servlet.storeMarker(new Marker(40.705, -74.015, "Manhattan"));
+    servlet.storeMarker(new Marker(34.05, -118.24, "Los Angeles"));
+
+    JsonArray markers = getMarkers("30,-125,45,-70", 20);
+
+    Assert.assertEquals(setOf("Manhattan", "Los Angeles"), getContents(markers));
+  }
+
+  @Test
+  public void withoutBoxEveryMarkerIsReturned() throws Exception {
+    servlet.storeMarker(new Marker(40.705, -74.015, "Manhattan"));
+    servlet.storeMarker(new Marker(51.5, -0.12, "London"));
+
+    Assert.assertEquals(setOf("Manhattan", "London"), getContents(getMarkers(null, 0)));
+  }
+
+  @Test
+  public void invalidBoxIsRejected() throws Exception {
+    HttpServletResponse response = mock(HttpServletResponse.class);
+
+    servlet.doGet(newRequest("1,2,3", 10), response);
+
+    verify(response).sendError(eq(HttpServletResponse.SC_BAD_REQUEST), anyString());
+  }
+
+  @Test
+  public void backfillAddsTilesToOlderMarkers() throws Exception {
+    Entity markerEntity = new Entity("Marker");
+    markerEntity.setProperty("lat", 40.705);
+    markerEntity.setProperty("lng", -74.015);
+    markerEntity.setProperty("content", "Stored before tiles");
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    datastore.put(markerEntity);
+    Assert.assertTrue(getContents(getMarkers(MANHATTAN, 15)).isEmpty());
+
+    servlet.init();
+
+    Assert.assertEquals(QuadKeys.getQuadKey(40.705, -74.015, QuadKeys.MAX_ZOOM),
+        datastore.get(markerEntity.getKey()).getProperty("tile"));
+    Assert.assertEquals(setOf("Stored before tiles"), getContents(getMarkers(MANHATTAN, 15)));
+    // The backfill is recorded as done, so it doesn't read every marker again.
+    Assert.assertEquals(1, datastore.prepare(new Query("Migration"))
+        .countEntities(FetchOptions.Builder.withDefaults()));
+  }
+
+  private static Set<String> setOf(String... contents) {
+    return new HashSet<>(Arrays.asList(contents));
+  }
+
+  private static Set<String> getContents(JsonArray markers) {
+    Set<String> contents = new HashSet<>();
+    for (JsonElement marker : markers) {
+      contents.add(marker.getAsJsonObject().get("content").getAsString());
+    }
+    return contents;
+  }
+
+  /** Returns the markers sent for {@code bbox} at {@code zoom}, or all of them if bbox is null. */
+  private JsonArray getMarkers(String bbox, int zoom) throws Exception {
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    StringWriter body = new StringWriter();
+    when(response.getWriter()).thenReturn(new PrintWriter(body));
+
+    servlet.doGet(newRequest(bbox, zoom), response);
+    return JsonParser.parseString(body.toString()).getAsJsonArray();
+  }
+
+  private static HttpServletRequest newRequest(String bbox, int zoom) {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getParameter("bbox")).thenReturn(bbox);
+    when(request.getParameter("zoom")).thenReturn(String.valueOf(zoom));
+    return request;
+  }
+}
@@ -0,0 +1,122 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.tiles;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class QuadKeysTest {
+  @Test
+  public void firstZoomSplitsTheWorldInQuarters() {
+    Assert.assertEquals("0", QuadKeys.getQuadKey(45, -90, 1));
+    Assert.assertEquals("1", QuadKeys.getQuadKey(45, 90, 1));
+    Assert.assertEquals("2", QuadKeys.getQuadKey(-45, -90, 1));
+    Assert.assertEquals("3", QuadKeys.getQuadKey(-45, 90, 1));
+  }
+
+  @Test
+  public void digitsInterleaveColumnAndRow() {
+    // Tile column 3, row 5 at zoom 3: 3 is 011 and 5 is 101, so the digits are 2, 1 and 3.
+    Assert.assertEquals("213", QuadKeys.getQuadKey(-50, -22.5, 3));
+  }
+
+  @Test
+  public void keysOfShallowerTilesArePrefixes() {
+    double[][] points = {{40.7128, -74.006}, {-33.8688, 151.2093}, {0, 0}, {64.1466, -21.9426}};
+    for (double[] point : points) {
+      String deepest = QuadKeys.getQuadKey(point[0], point[1], QuadKeys.MAX_ZOOM);
+      Assert.assertEquals(QuadKeys.MAX_ZOOM, deepest.length());
+      for (int zoom = 0; zoom < QuadKeys.MAX_ZOOM; zoom++) {
+        Assert.assertEquals(
+            deepest.substring(0, zoom), QuadKeys.getQuadKey(point[0], point[1], zoom));
+      }
+    }
+  }
+
+  @Test
+  public void pointsPastTheEdgesGoInTheEdgeTiles() {
+    Assert.assertEquals(QuadKeys.getQuadKey(85.1, 10, 4), QuadKeys.getQuadKey(90, 10, 4));
+    Assert.assertEquals(QuadKeys.getQuadKey(-85.1, 10, 4), QuadKeys.getQuadKey(-90, 10, 4));
+    // 180 would be the first column of the next world over.
+    Assert.assertEquals("3", QuadKeys.getQuadKey(-1, 180, 1));
+  }
+
+  @Test
+  public void rangeEndBoundsExactlyTheKeysWithThePrefix() {
+    String prefix = "0312";
+    String end = QuadKeys.getRangeEnd(prefix);
+
+    for (String key : Arrays.asList("0312", "03120", "03123333", "03123333333333333333")) {
+      Assert.assertTrue(key.compareTo(prefix) >= 0 && key.compareTo(end) < 0);
+    }
+    for (String key : Arrays.asList("0311", "03113333", "0313", "032")) {
+      Assert.assertFalse(key.compareTo(prefix) >= 0 && key.compareTo(end) < 0);
+    }
+  }
+
+  @Test
+  public void smallBoxIsCoveredByTheTileContainingIt() {
+    List<String> quadKeys = QuadKeys.getCoveringQuadKeys(40.70, -74.02, 40.72, -74.00, 6);
+
+    Assert.assertEquals(Arrays.asList(QuadKeys.getQuadKey(40.71, -74.01, 6)), quadKeys);
+    Assert.assertEquals(1, QuadKeys.countCoveringTiles(40.70, -74.02, 40.72, -74.00, 6));
+  }
+
+  @Test
+  public void coveringTilesRunNorthToSouthInEachColumn() {
+    List<String> quadKeys = QuadKeys.getCoveringQuadKeys(-45, -90, 45, 90, 1);
+
+    Assert.assertEquals(Arrays.asList("0", "2", "1", "3"), quadKeys);
+    Assert.assertEquals(4, QuadKeys.countCoveringTiles(-45, -90, 45, 90, 1));
+  }
+
+  @Test
+  public void boxAcrossTheAntimeridianWrapsAround() {
+    // Columns 3 and 0 at zoom 2, in row 1.
+    List<String> quadKeys = QuadKeys.getCoveringQuadKeys(10, 170, 20, -170, 2);
+
+    Assert.assertEquals(Arrays.asList("13", "02"), quadKeys);
+    Assert.assertEquals(2, QuadKeys.countCoveringTiles(10, 170, 20, -170, 2));
+  }
+
+  @Test
+  public void boxAcrossTheAntimeridianWithBothEdgesInOneColumnCoversEveryColumn() {
+    // From -10 east all the way around to -20: both edges are in column 1 at zoom 2.
+    List<String> quadKeys = QuadKeys.getCoveringQuadKeys(10, -10, 20, -20, 2);
+
+    Assert.assertEquals(new HashSet<>(Arrays.asList("02", "03", "12", "13")),
+        new HashSet<>(quadKeys));
+    Assert.assertEquals(4, quadKeys.size());
+    Assert.assertEquals(4, QuadKeys.countCoveringTiles(10, -10, 20, -20, 2));
+  }
+
+  @Test
+  public void tileCountMatchesTheCoveringKeys() {
+    double[][] boxes = {{-60, -150, 70, 120}, {30, 100, 35, -100}, {-10, -10, 10, 10}};
+    for (double[] box : boxes) {
+      for (int zoom = 0; zoom <= 6; zoom++) {
+        Assert.assertEquals(
+            QuadKeys.getCoveringQuadKeys(box[0], box[1], box[2], box[3], zoom).size(),
+            QuadKeys.countCoveringTiles(box[0], box[1], box[2], box[3], zoom));
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.translation;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.translate.Translate;
+import com.google.cloud.translate.Translation;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class CloudTranslatorTest {
+  private static final String LANGUAGE_CODE = "fr";
+
+  @Test
+  public void keepsOrderAcrossBatches() {
+    // Translate each batch with the fake, remembering the batch sizes.
+    FakeTranslator fakeTranslator = new FakeTranslator();
+    Translate translateService = mock(Translate.class);
+    when(translateService.translate(anyList(), any(Translate.TranslateOption.class)))
+        .thenAnswer(invocation -> {
+          List<String> batch = invocation.getArgument(0);
+          Thread.sleep(1);
+          List<Translation> translations = new ArrayList<>();
+          for (String translatedText : fakeTranslator.translate(batch, LANGUAGE_CODE)) {
+            Translation translation = mock(Translation.class);
+            when(translation.getTranslatedText()).thenReturn(translatedText);
+            translations.add(translation);
+          }
+          return translations;
+        });
+    CloudTranslator translator = new CloudTranslator(translateService);
+
+    List<String> texts = new ArrayList<>();
+    for (int i = 0; i < 250; i++) {
+      texts.add("Text " + i);
+    }
+    List<String> actual = translator.translate(texts, LANGUAGE_CODE);
+
+    List<String> expected = new ArrayList<>();
+    for (String text : texts) {
+      expected.add(FakeTranslator.translationOf(text, LANGUAGE_CODE));
+    }
+    Assert.assertEquals(expected, actual);
+    Assert.assertEquals(3, translator.getBatchCount());
+    Assert.assertTrue(translator.getAverageBatchLatencyMillis() >= 1);
+    List<List<String>> calls = fakeTranslator.getCalls();
+    Assert.assertEquals(texts.subList(0, 100), calls.get(0));
+    Assert.assertEquals(texts.subList(100, 200), calls.get(1));
+    Assert.assertEquals(texts.subList(200, 250), calls.get(2));
+  }
+
+  @Test
+  public void sendsNothingForNoTexts() {
+    Translate translateService = mock(Translate.class);
+    CloudTranslator translator = new CloudTranslator(translateService);
+
+    List<String> actual = translator.translate(new ArrayList<>(), LANGUAGE_CODE);
+
+    Assert.assertTrue(actual.isEmpty());
+    Assert.assertEquals(0, translator.getBatchCount());
+    Assert.assertEquals(0, translator.getAverageBatchLatencyMillis(), 0);
+  }
+}
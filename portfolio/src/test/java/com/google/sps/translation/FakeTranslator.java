@@ -0,0 +1,46 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.translation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Translator for tests that "translates" each text by prefixing it with the language code, and
+ * remembers the texts of every call.
+ */
+public final class FakeTranslator implements Translator {
+  private final List<List<String>> calls = new ArrayList<>();
+
+  @Override
+  public List<String> translate(List<String> texts, String languageCode) {
+    calls.add(new ArrayList<>(texts));
+    List<String> translatedTexts = new ArrayList<>(texts.size());
+    for (String text : texts) {
+      translatedTexts.add(translationOf(text, languageCode));
+    }
+    return translatedTexts;
+  }
+
+  /** Returns the texts passed to each call so far, in order. */
+  public List<List<String>> getCalls() {
+    return calls;
+  }
+
+  /** Returns what this translator turns {@code text} into. */
+  public static String translationOf(String text, String languageCode) {
+    return languageCode + ": " + text;
+  }
+}
@@ -26,6 +26,8 @@ import javax.servlet.http.HttpServletResponse;
 @WebServlet("/server-stats")
 public final class ServerStatsServlet extends HttpServlet {
 
+  private static final Gson gson = new Gson();
+
   private final Date startTime = new Date();
 
   @Override
@@ -69,7 +71,6 @@ public final class ServerStatsServlet extends HttpServlet {
    * the Gson library dependency to pom.xml.
    */
   private String convertToJsonUsingGson(ServerStats serverStats) {
-    Gson gson = new Gson();
     String json = gson.toJson(serverStats);
     return json;
   }
@@ -0,0 +1,127 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * Counts per year, stored in an array indexed by year with prefix sums alongside, so that the total
+ * of any range of years takes two array reads. Years between the first and last without a count
+ * count as zero. New years can only be appended after the last one.
+ */
+public class YearlyCounts {
+  /** The most years that an appended year can be after the last one. */
+  public static final int MAX_YEARS_AHEAD = 100;
+
+  private final int firstYear;
+  private int yearCount;
+  private int[] counts;
+  // prefixSums[i] is the total of counts[0] to counts[i - 1].
+  private long[] prefixSums;
+
+  /** Stores {@code counts[i]} for {@code years[i]}; the years must be increasing. */
+  public YearlyCounts(int[] years, int[] counts) {
+    if (years.length == 0) {
+      throw new IllegalArgumentException("No years given");
+    }
+    this.firstYear = years[0];
+    this.counts = new int[0];
+    this.prefixSums = new long[] {0};
+    for (int i = 0; i < years.length; i++) {
+      append(years[i], counts[i]);
+    }
+  }
+
+  public synchronized int getFirstYear() {
+    return firstYear;
+  }
+
+  public synchronized int getLastYear() {
+    return firstYear + yearCount - 1;
+  }
+
+  /**
+   * Adds the count of a year after the last one, counting the years in between as zero. Throws
+   * IllegalArgumentException if {@code year} isn't after the last year, is more than
+   * MAX_YEARS_AHEAD years after it, or if {@code count} is negative.
+   */
+  public synchronized void append(int year, int count) {
+    if (count < 0) {
+      throw new IllegalArgumentException("Count " + count + " is negative");
+    }
+    if (year < firstYear || (yearCount > 0 && year <= getLastYear())) {
+      throw new IllegalArgumentException(
+          "Year " + year + " is not after the last year, " + getLastYear());
+    }
+    long lastYear = yearCount > 0 ? getLastYear() : firstYear;
+    if ((long) year - lastYear > MAX_YEARS_AHEAD) {
+      throw new IllegalArgumentException("Year " + year + " is more than " + MAX_YEARS_AHEAD
+          + " years after the last year, " + lastYear);
+    }
+    int newYearCount = year - firstYear + 1;
+    if (newYearCount > counts.length) {
+      int capacity = Math.max(newYearCount, counts.length * 2);
+      counts = Arrays.copyOf(counts, capacity);
+      prefixSums = Arrays.copyOf(prefixSums, capacity + 1);
+    }
+    for (int i = yearCount; i < newYearCount; i++) {
+      counts[i] = i == newYearCount - 1 ? count : 0;
+      prefixSums[i + 1] = prefixSums[i] + counts[i];
+    }
+    yearCount = newYearCount;
+  }
+
+  /** Returns the total count from year {@code from} to year {@code to}, both included. */
+  public synchronized long sum(long from, long to) {
+    return prefixSum(to + 1) - prefixSum(from);
+  }
+
+  /**
+   * Returns the counts from {@code from} to {@code to} in buckets of {@code bucketYears} years,
+   * keyed by the first year of each bucket. Each value is the bucket's total or, if
+   * {@code windowYears} is positive, the average of the {@code windowYears} years ending with the
+   * bucket's last year. The years are counted in longs, so that no bound can overflow.
+   */
+  public synchronized LinkedHashMap<Integer, Number> query(
+      int from, int to, int bucketYears, int windowYears) {
+    LinkedHashMap<Integer, Number> values = new LinkedHashMap<>();
+    for (long bucketStart = from; bucketStart <= to; bucketStart += bucketYears) {
+      long bucketEnd = Math.min(to, bucketStart + bucketYears - 1);
+      if (windowYears > 0) {
+        values.put((int) bucketStart,
+            (double) sum(bucketEnd - windowYears + 1, bucketEnd) / windowYears);
+      } else {
+        values.put((int) bucketStart, sum(bucketStart, bucketEnd));
+      }
+    }
+    return values;
+  }
+
+  /** Returns the counts of every year, keyed by year. */
+  public synchronized LinkedHashMap<Integer, Integer> toMap() {
+    LinkedHashMap<Integer, Integer> values = new LinkedHashMap<>();
+    for (int i = 0; i < yearCount; i++) {
+      values.put(firstYear + i, counts[i]);
+    }
+    return values;
+  }
+
+  /** Returns the total of the years before {@code year}, clamping it to the stored years. */
+  private long prefixSum(long year) {
+    long index = Math.max(0, Math.min(yearCount, year - firstYear));
+    return prefixSums[(int) index];
+  }
+}
@@ -15,41 +15,134 @@
 package com.google.sps.servlets;
 
 import com.google.gson.Gson;
+import com.google.sps.CsvLoader;
+import com.google.sps.PrecompressedBody;
+import com.google.sps.data.YearlyCounts;
 import java.io.IOException;
-import java.util.LinkedHashMap;
-import java.util.Scanner;
+import java.time.Year;
+import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Returns bigfoot data as a JSON object, e.g. {"2017": 52, "2018": 34}] */
+/**
+ * Returns bigfoot data as a JSON object, e.g. {"2017": 52, "2018": 34}]
+ *
+ * <p>The "from" and "to" parameters limit the years returned, and "bucket" (e.g. "5y") adds up the
+ * sightings of that many years per entry, keyed by the first year. With "window" (e.g. "3y"), each
+ * entry is instead the average of that many years ending with the entry's last year.
+ *
+ * <p>POST a "year" after the last one and its "sightings" to add it. Added years are kept in memory
+ * only, until the server restarts.
+ */
 @WebServlet("/bigfoot-data")
 public class BigfootDataServlet extends HttpServlet {
 
-  private LinkedHashMap<Integer, Integer> bigfootSightings = new LinkedHashMap<>();
+  private static final Gson gson = new Gson();
 
-  @Override
-  public void init() {
-    Scanner scanner = new Scanner(getServletContext().getResourceAsStream(
-        "/WEB-INF/bigfoot-sightings-by-year.csv"));
-    while (scanner.hasNextLine()) {
-      String line = scanner.nextLine();
-      String[] cells = line.split(",");
+  // Keeps a single response from holding an unbounded number of buckets.
+  private static final int MAX_BUCKETS = 10000;
+
+  private YearlyCounts bigfootSightings;
+  // The full series only changes on POST, so its response is serialized and compressed then.
+  private volatile PrecompressedBody body;
 
-      Integer year = Integer.valueOf(cells[0]);
-      Integer sightings = Integer.valueOf(cells[1]);
+  @Override
+  public void init() throws ServletException {
+    int[][] columns;
+    try {
+      columns = CsvLoader.loadInts(
+          getServletContext(), "/WEB-INF/bigfoot-sightings-by-year.csv", 2);
+    } catch (IOException e) {
+      throw new ServletException("Could not load the bigfoot data.", e);
+    }
+    bigfootSightings = new YearlyCounts(columns[0], columns[1]);
 
-      bigfootSightings.put(year, sightings);
+    try {
+      updateBody();
+    } catch (IOException e) {
+      throw new ServletException("Could not serialize the bigfoot data.", e);
     }
-    scanner.close();
   }
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String fromString = request.getParameter("from");
+    String toString = request.getParameter("to");
+    String bucketString = request.getParameter("bucket");
+    String windowString = request.getParameter("window");
+    if (fromString == null && toString == null && bucketString == null && windowString == null) {
+      body.serve(request, response);
+      return;
+    }
+
+    int from;
+    int to;
+    int bucketYears;
+    int windowYears;
+    try {
+      from = fromString == null ? bigfootSightings.getFirstYear() : Integer.parseInt(fromString);
+      to = toString == null ? bigfootSightings.getLastYear() : Integer.parseInt(toString);
+      bucketYears = bucketString == null ? 1 : parseYears(bucketString);
+      windowYears = windowString == null ? 0 : parseYears(windowString);
+    } catch (NumberFormatException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid from, to, bucket or window.");
+      return;
+    }
+    if (from > to || bucketYears < 1 || windowYears < 0) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid from, to, bucket or window.");
+      return;
+    }
+    // Only the stored years have counts, so the range is limited to them.
+    from = Math.max(from, bigfootSightings.getFirstYear());
+    to = Math.min(to, bigfootSightings.getLastYear());
+    if (from <= to && ((long) to - from) / bucketYears >= MAX_BUCKETS) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid from, to, bucket or window.");
+      return;
+    }
+
     response.setContentType("application/json");
-    Gson gson = new Gson();
-    String json = gson.toJson(bigfootSightings);
+    String json = gson.toJson(bigfootSightings.query(from, to, bucketYears, windowYears));
     response.getWriter().println(json);
   }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    int year;
+    int sightings;
+    try {
+      year = Integer.parseInt(request.getParameter("year"));
+      sightings = Integer.parseInt(request.getParameter("sightings"));
+    } catch (NumberFormatException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid year or sightings.");
+      return;
+    }
+    if (sightings < 0 || year > Year.now().getValue()) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "Sightings can't be negative, and the year can't be in the future.");
+      return;
+    }
+
+    // Appends are serialized so that the cached response always ends with the latest one.
+    synchronized (this) {
+      try {
+        bigfootSightings.append(year, sightings);
+      } catch (IllegalArgumentException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        return;
+      }
+      updateBody();
+    }
+  }
+
+  /** Serializes and compresses the full series for the requests without parameters. */
+  private void updateBody() throws IOException {
+    body = new PrecompressedBody(gson.toJson(bigfootSightings.toMap()), "application/json");
+  }
+
+  /** Parses a number of years written as "5" or "5y". */
+  private static int parseYears(String years) {
+    return Integer.parseInt(years.endsWith("y") ? years.substring(0, years.length() - 1) : years);
+  }
 }
@@ -0,0 +1,125 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Checks that CsvLoader.parseDouble gives exactly what Double.parseDouble gives, on the fast path
+ * and off it. The ufos example tests its copy of CsvLoader the same way.
+ */
+@RunWith(JUnit4.class)
+public final class CsvLoaderTest {
+  private static final String CSV_PATH = "src/main/webapp/WEB-INF/bigfoot-sightings-by-year.csv";
+
+  @Test
+  public void parsesSignsAndExponents() {
+    for (String text : new String[] {
+        "0", "-0", "+0", "42", "-42", "+42", "-162.597762", "+21.926485",
+        "1e5", "1E5", "-1.5e-3", "2.5E+10", "6.02214076e23", "1e-320", "1e308"}) {
+      assertParsesLikeJava(text);
+    }
+  }
+
+  @Test
+  public void parsesLeadingAndTrailingDots() {
+    for (String text : new String[] {".5", "-.5", "5.", "-5.", "0.", ".0", "000.000100"}) {
+      assertParsesLikeJava(text);
+    }
+  }
+
+  @Test
+  public void ignoresSpacesAroundTheNumber() {
+    Assert.assertEquals(-74.006, parse("  -74.006 "), 0);
+  }
+
+  @Test
+  public void parsesLongMantissasOffTheFastPath() {
+    for (String text : new String[] {
+        // More digits than a long holds, more than 2^53, and exponents past the exact powers.
+        "12345678901234567890123", "0.12345678901234567890123", "9007199254740993",
+        "123456789012345678", "1234567890.1234567890", "0.0000000000000000000000001",
+        "100000000000000000000000000", "3.141592653589793238462643383279"}) {
+      assertParsesLikeJava(text);
+    }
+  }
+
+  @Test
+  public void matchesJavaOnRandomNumbers() {
+    Random random = new Random(2019);
+    for (int i = 0; i < 100_000; i++) {
+      double value = random.nextBoolean()
+          ? (random.nextDouble() - 0.5) * 360
+          : Double.longBitsToDouble(random.nextLong());
+      if (Double.isNaN(value) || Double.isInfinite(value)) {
+        continue;
+      }
+      assertParsesLikeJava(Double.toString(value));
+      assertParsesLikeJava(String.format("%.7f", value));
+    }
+  }
+
+  @Test
+  public void rejectsMalformedFields() {
+    for (String text : new String[] {
+        "", "   ", "-", "+", ".", "-.", "1.2.3", "1,5", "12a", "a12", "1 2", "--1", "1e", "1e+",
+        "0x10", "NaN", "Infinity"}) {
+      try {
+        parse(text);
+        Assert.fail("Parsed \"" + text + "\"");
+      } catch (NumberFormatException expected) {
+        // Expected.
+      }
+    }
+  }
+
+  @Test
+  public void matchesJavaOnTheRealCsv() throws Exception {
+    byte[] file = Files.readAllBytes(Paths.get(CSV_PATH));
+    String[] lines = new String(file, StandardCharsets.UTF_8).split("\r?\n");
+    int cells = 0;
+    for (String line : lines) {
+      for (String cell : line.split(",")) {
+        assertParsesLikeJava(cell);
+        cells++;
+      }
+    }
+    Assert.assertTrue(cells > 100);
+  }
+
+  private static double parse(String text) {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    // Put the text in the middle of a larger buffer, as a cell is in a file.
+    ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 2);
+    buffer.put((byte) ',').put(bytes).put((byte) ',');
+    return CsvLoader.parseDouble(buffer, 1, 1 + bytes.length);
+  }
+
+  private static void assertParsesLikeJava(String text) {
+    double expected = Double.parseDouble(text.trim());
+    double actual = parse(text);
+    // Compare bits, so that -0.0 and 0.0 are told apart.
+    Assert.assertEquals("Parsing \"" + text + "\"",
+        Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+  }
+}
@@ -0,0 +1,196 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class YearlyCountsTest {
+  // 1950: 3, 1951: 0, 1952: 1, 1953: 0 (missing), 1954: 4, 1955: 2.
+  private static final int[] YEARS = {1950, 1951, 1952, 1954, 1955};
+  private static final int[] COUNTS = {3, 0, 1, 4, 2};
+
+  @Test
+  public void missingYearsCountAsZero() {
+    YearlyCounts yearlyCounts = new YearlyCounts(YEARS, COUNTS);
+
+    Map<Integer, Integer> expected = new LinkedHashMap<>();
+    expected.put(1950, 3);
+    expected.put(1951, 0);
+    expected.put(1952, 1);
+    expected.put(1953, 0);
+    expected.put(1954, 4);
+    expected.put(1955, 2);
+    Assert.assertEquals(expected, yearlyCounts.toMap());
+    Assert.assertEquals(1950, yearlyCounts.getFirstYear());
+    Assert.assertEquals(1955, yearlyCounts.getLastYear());
+  }
+
+  @Test
+  public void sumsMatchAddingTheYears() {
+    YearlyCounts yearlyCounts = new YearlyCounts(YEARS, COUNTS);
+    Map<Integer, Integer> counts = yearlyCounts.toMap();
+
+    for (int from = 1950; from <= 1955; from++) {
+      for (int to = from; to <= 1955; to++) {
+        long expected = 0;
+        for (int year = from; year <= to; year++) {
+          expected += counts.get(year);
+        }
+        Assert.assertEquals(expected, yearlyCounts.sum(from, to));
+      }
+    }
+  }
+
+  @Test
+  public void yearsOutsideTheRangeCountAsZero() {
+    YearlyCounts yearlyCounts = new YearlyCounts(YEARS, COUNTS);
+
+    Assert.assertEquals(10, yearlyCounts.sum(1900, 2000));
+    Assert.assertEquals(3, yearlyCounts.sum(1900, 1950));
+    Assert.assertEquals(2, yearlyCounts.sum(1955, 2000));
+    Assert.assertEquals(0, yearlyCounts.sum(1900, 1949));
+    Assert.assertEquals(0, yearlyCounts.sum(1956, 2000));
+    Assert.assertEquals(10, yearlyCounts.sum(Integer.MIN_VALUE, Integer.MAX_VALUE));
+  }
+
+  @Test
+  public void bucketsAreKeyedByTheirFirstYear() {
+    YearlyCounts yearlyCounts = new YearlyCounts(YEARS, COUNTS);
+
+    LinkedHashMap<Integer, Number> buckets = yearlyCounts.query(1948, 1956, 3, 0);
+
+    Map<Integer, Number> expected = new LinkedHashMap<>();
+    expected.put(1948, 3L);  // 1948 to 1950.
+    expected.put(1951, 1L);  // 1951 to 1953.
+    expected.put(1954, 6L);  // 1954 to 1956.
+    Assert.assertEquals(expected, buckets);
+  }
+
+  @Test
+  public void lastBucketStopsAtTheEndOfTheRange() {
+    YearlyCounts yearlyCounts = new YearlyCounts(YEARS, COUNTS);
+
+    LinkedHashMap<Integer, Number> buckets = yearlyCounts.query(1950, 1954, 3, 0);
+
+    Map<Integer, Number> expected = new LinkedHashMap<>();
+    expected.put(1950, 4L);
+    expected.put(1953, 4L);  // 1953 and 1954 only.
+    Assert.assertEquals(expected, buckets);
+  }
+
+  @Test
+  public void windowAveragesTheYearsEndingWithEachBucket() {
+    YearlyCounts yearlyCounts = new YearlyCounts(YEARS, COUNTS);
+
+    LinkedHashMap<Integer, Number> averages = yearlyCounts.query(1950, 1955, 2, 3);
+
+    Map<Integer, Number> expected = new LinkedHashMap<>();
+    expected.put(1950, 1.0);  // 1949 to 1951: 0, 3 and 0.
+    expected.put(1952, 1 / 3.0);  // 1951 to 1953: 0, 1 and 0.
+    expected.put(1954, 2.0);  // 1953 to 1955: 0, 4 and 2.
+    Assert.assertEquals(expected, averages);
+  }
+
+  @Test
+  public void queriesAtTheEdgesOfIntDoNotOverflow() {
+    YearlyCounts yearlyCounts = new YearlyCounts(YEARS, COUNTS);
+
+    LinkedHashMap<Integer, Number> last =
+        yearlyCounts.query(Integer.MAX_VALUE - 1, Integer.MAX_VALUE, 1, 0);
+    LinkedHashMap<Integer, Number> first =
+        yearlyCounts.query(Integer.MIN_VALUE, Integer.MIN_VALUE + 1, 1, 10);
+
+    Assert.assertEquals(2, last.size());
+    Assert.assertEquals(0L, last.get(Integer.MAX_VALUE));
+    Assert.assertEquals(2, first.size());
+    Assert.assertEquals(0.0, first.get(Integer.MIN_VALUE));
+    Assert.assertEquals(1, yearlyCounts.query(1950, 1955, Integer.MAX_VALUE, 0).size());
+  }
+
+  @Test
+  public void appendedYearsExtendTheSums() {
+    YearlyCounts yearlyCounts = new YearlyCounts(YEARS, COUNTS);
+
+    yearlyCounts.append(1956, 5);
+    yearlyCounts.append(1960, 7);
+
+    Assert.assertEquals(1960, yearlyCounts.getLastYear());
+    Assert.assertEquals(Integer.valueOf(0), yearlyCounts.toMap().get(1958));
+    Assert.assertEquals(22, yearlyCounts.sum(1950, 1960));
+    Assert.assertEquals(12, yearlyCounts.sum(1956, 2000));
+  }
+
+  @Test
+  public void manyAppendsGrowTheArrays() {
+    YearlyCounts yearlyCounts = new YearlyCounts(new int[] {1}, new int[] {1});
+
+    for (int year = 2; year <= 10_000; year++) {
+      yearlyCounts.append(year, 1);
+    }
+
+    Assert.assertEquals(10_000, yearlyCounts.sum(1, 10_000));
+    Assert.assertEquals(100, yearlyCounts.sum(5001, 5100));
+  }
+
+  @Test
+  public void appendAllowsUpToMaxYearsAhead() {
+    YearlyCounts yearlyCounts = new YearlyCounts(YEARS, COUNTS);
+
+    yearlyCounts.append(1955 + YearlyCounts.MAX_YEARS_AHEAD, 1);
+
+    Assert.assertEquals(1955 + YearlyCounts.MAX_YEARS_AHEAD, yearlyCounts.getLastYear());
+  }
+
+  @Test
+  public void appendRejectsBadYearsAndCounts() {
+    YearlyCounts yearlyCounts = new YearlyCounts(YEARS, COUNTS);
+
+    assertRejected(yearlyCounts, 1956, -1);
+    assertRejected(yearlyCounts, 1955, 1);
+    assertRejected(yearlyCounts, 1940, 1);
+    assertRejected(yearlyCounts, 1956 + YearlyCounts.MAX_YEARS_AHEAD, 1);
+    assertRejected(yearlyCounts, Integer.MAX_VALUE, 1);
+    assertRejected(yearlyCounts, Integer.MIN_VALUE, 1);
+
+    // Nothing was changed by the rejected appends.
+    Assert.assertEquals(1955, yearlyCounts.getLastYear());
+    Assert.assertEquals(10, yearlyCounts.sum(1950, 1955));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructorRejectsYearsOutOfOrder() {
+    new YearlyCounts(new int[] {1950, 1952, 1951}, new int[] {1, 1, 1});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructorRejectsNoYears() {
+    new YearlyCounts(new int[0], new int[0]);
+  }
+
+  private static void assertRejected(YearlyCounts yearlyCounts, int year, int count) {
+    try {
+      yearlyCounts.append(year, count);
+      Assert.fail("Appended " + count + " for " + year);
+    } catch (IllegalArgumentException expected) {
+      // Expected.
+    }
+  }
+}
@@ -28,12 +28,13 @@ import javax.servlet.http.HttpServletResponse;
 @WebServlet("/color-data")
 public class ColorDataServlet extends HttpServlet {
 
+  private static final Gson gson = new Gson();
+
   private Map<String, Integer> colorVotes = new HashMap<>();
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
     response.setContentType("application/json");
-    Gson gson = new Gson();
     String json = gson.toJson(colorVotes);
     response.getWriter().println(json);
   }
@@ -35,13 +35,14 @@ import org.jsoup.safety.Whitelist;
 @WebServlet("/markers")
 public class MarkerServlet extends HttpServlet {
 
+  private static final Gson gson = new Gson();
+
   /** Responds with a JSON array containing marker data. */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
     response.setContentType("application/json");
 
     Collection<Marker> markers = getMarkers();
-    Gson gson = new Gson();
     String json = gson.toJson(markers);
 
     response.getWriter().println(json);
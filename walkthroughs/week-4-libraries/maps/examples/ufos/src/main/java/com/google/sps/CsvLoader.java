@@ -0,0 +1,271 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Logger;
+import javax.servlet.ServletContext;
+
+/**
+ * Loads CSV files of numbers into one primitive array per column, parsing the numbers straight from
+ * the file's bytes instead of going through a String per line and per cell.
+ *
+ * <p>Files that exist on disk are memory-mapped; other resources are read into memory first. Lines
+ * that can't be parsed are skipped and logged with their line number. Columns after the ones asked
+ * for are ignored.
+ *
+ * <p>The bigfoot-sightings example has an identical copy of this class, since each example builds on its own.
+ * Make any change to both.
+ */
+public final class CsvLoader {
+  private static final Logger logger = Logger.getLogger(CsvLoader.class.getName());
+
+  // Log this many malformed lines of a file, then only count the rest.
+  private static final int MAX_LOGGED_MALFORMED_LINES = 10;
+
+  // Powers of ten that doubles represent exactly, for the parsing fast path.
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  private CsvLoader() {}
+
+  /** Receives the values of each well-formed line. */
+  private interface RowConsumer {
+    /** Stores {@code values} as row {@code row}, or throws NumberFormatException to reject them. */
+    void accept(int row, double[] values);
+  }
+
+  /**
+   * Returns the first {@code columnCount} columns of the CSV web app resource at {@code path} as
+   * {@code columns[column][row]}.
+   */
+  public static double[][] loadDoubles(ServletContext context, String path, int columnCount)
+      throws IOException {
+    ByteBuffer bytes = open(context, path);
+    double[][] columns = new double[columnCount][countLines(bytes)];
+    int rows = parse(bytes, path, columnCount, (row, values) -> {
+      for (int column = 0; column < columnCount; column++) {
+        columns[column][row] = values[column];
+      }
+    });
+    for (int column = 0; column < columnCount; column++) {
+      columns[column] = Arrays.copyOf(columns[column], rows);
+    }
+    return columns;
+  }
+
+  /**
+   * Returns the first {@code columnCount} columns of the CSV web app resource at {@code path} as
+   * {@code columns[column][row]}. Lines with a value that isn't an int are skipped.
+   */
+  public static int[][] loadInts(ServletContext context, String path, int columnCount)
+      throws IOException {
+    ByteBuffer bytes = open(context, path);
+    int[][] columns = new int[columnCount][countLines(bytes)];
+    int rows = parse(bytes, path, columnCount, (row, values) -> {
+      for (double value : values) {
+        if (value != (int) value) {
+          throw new NumberFormatException("Not an int: " + value);
+        }
+      }
+      for (int column = 0; column < columnCount; column++) {
+        columns[column][row] = (int) values[column];
+      }
+    });
+    for (int column = 0; column < columnCount; column++) {
+      columns[column] = Arrays.copyOf(columns[column], rows);
+    }
+    return columns;
+  }
+
+  /** Returns the bytes of the web app resource at {@code path}, mapped from disk when possible. */
+  private static ByteBuffer open(ServletContext context, String path) throws IOException {
+    String realPath = context.getRealPath(path);
+    if (realPath != null && Paths.get(realPath).toFile().isFile()) {
+      try (FileChannel channel = FileChannel.open(Paths.get(realPath), StandardOpenOption.READ)) {
+        if (channel.size() <= Integer.MAX_VALUE) {
+          return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        throw new IOException(path + " is too large to map: " + channel.size() + " bytes");
+      }
+    }
+
+    try (InputStream stream = context.getResourceAsStream(path)) {
+      if (stream == null) {
+        throw new FileNotFoundException(path);
+      }
+      ByteArrayOutputStream contents = new ByteArrayOutputStream();
+      byte[] chunk = new byte[64 * 1024];
+      for (int read = stream.read(chunk); read != -1; read = stream.read(chunk)) {
+        contents.write(chunk, 0, read);
+      }
+      return ByteBuffer.wrap(contents.toByteArray());
+    }
+  }
+
+  /** Returns an upper bound on the number of lines in {@code bytes}. */
+  private static int countLines(ByteBuffer bytes) {
+    int lines = 1;
+    for (int i = bytes.position(); i < bytes.limit(); i++) {
+      if (bytes.get(i) == '\n') {
+        lines++;
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * Parses each line of {@code bytes} into {@code columnCount} numbers and passes them to
+   * {@code consumer}, numbering the accepted rows from 0. Returns the number of accepted rows.
+   */
+  private static int parse(
+      ByteBuffer bytes, String path, int columnCount, RowConsumer consumer) {
+    double[] values = new double[columnCount];
+    int rows = 0;
+    int lineNumber = 0;
+    int malformedLines = 0;
+    int position = bytes.position();
+    while (position < bytes.limit()) {
+      lineNumber++;
+      int lineEnd = position;
+      while (lineEnd < bytes.limit() && bytes.get(lineEnd) != '\n') {
+        lineEnd++;
+      }
+      int nextLine = lineEnd + 1;
+      if (lineEnd > position && bytes.get(lineEnd - 1) == '\r') {
+        lineEnd--;
+      }
+
+      if (lineEnd > position) {
+        try {
+          int cellStart = position;
+          for (int column = 0; column < columnCount; column++) {
+            int cellEnd = cellStart;
+            while (cellEnd < lineEnd && bytes.get(cellEnd) != ',') {
+              cellEnd++;
+            }
+            if (cellEnd == lineEnd && column < columnCount - 1) {
+              throw new NumberFormatException(
+                  "Expected " + columnCount + " columns but found " + (column + 1));
+            }
+            values[column] = parseDouble(bytes, cellStart, cellEnd);
+            cellStart = cellEnd + 1;
+          }
+          consumer.accept(rows, values);
+          rows++;
+        } catch (NumberFormatException e) {
+          malformedLines++;
+          if (malformedLines <= MAX_LOGGED_MALFORMED_LINES) {
+            logger.warning(String.format("Skipping malformed line %d of %s: %s (\"%s\")",
+                lineNumber, path, e.getMessage(), decode(bytes, position, lineEnd)));
+          }
+        }
+      }
+      position = nextLine;
+    }
+
+    if (malformedLines > 0) {
+      logger.warning(String.format(
+          "Skipped %d malformed lines of %s in total.", malformedLines, path));
+    }
+    return rows;
+  }
+
+  /**
+   * Parses the decimal number in {@code bytes} from {@code start} to {@code end}, ignoring spaces
+   * around it. Numbers whose digits fit in a long and whose exponent is small are computed with one
+   * exact multiplication or division; the rest fall back to Double.parseDouble.
+   */
+  static double parseDouble(ByteBuffer bytes, int start, int end) {
+    while (start < end && bytes.get(start) == ' ') {
+      start++;
+    }
+    while (end > start && bytes.get(end - 1) == ' ') {
+      end--;
+    }
+    if (start == end) {
+      throw new NumberFormatException("Empty cell");
+    }
+
+    int i = start;
+    boolean negative = false;
+    if (bytes.get(i) == '-' || bytes.get(i) == '+') {
+      negative = bytes.get(i) == '-';
+      i++;
+    }
+
+    long mantissa = 0;
+    int digits = 0;
+    int exponent = 0;
+    boolean seenDigit = false;
+    boolean seenPoint = false;
+    boolean exact = true;
+    for (; i < end; i++) {
+      byte b = bytes.get(i);
+      if (b >= '0' && b <= '9') {
+        seenDigit = true;
+        if (digits < 18) {
+          mantissa = mantissa * 10 + (b - '0');
+          if (mantissa != 0) {
+            digits++;
+          }
+          if (seenPoint) {
+            exponent--;
+          }
+        } else {
+          // Too many digits for a long; leave it to Double.parseDouble.
+          exact = false;
+        }
+      } else if (b == '.' && !seenPoint) {
+        seenPoint = true;
+      } else if (b == 'e' || b == 'E') {
+        exact = false;
+        break;
+      } else {
+        throw new NumberFormatException("Not a number: \"" + decode(bytes, start, end) + "\"");
+      }
+    }
+    if (!seenDigit) {
+      throw new NumberFormatException("Not a number: \"" + decode(bytes, start, end) + "\"");
+    }
+
+    if (exact && mantissa < (1L << 53) && Math.abs(exponent) < POWERS_OF_TEN.length) {
+      double value = exponent < 0
+          ? mantissa / POWERS_OF_TEN[-exponent]
+          : mantissa * POWERS_OF_TEN[exponent];
+      return negative ? -value : value;
+    }
+    return Double.parseDouble(decode(bytes, start, end));
+  }
+
+  private static String decode(ByteBuffer bytes, int start, int end) {
+    byte[] text = new byte[end - start];
+    for (int i = 0; i < text.length; i++) {
+      text[i] = bytes.get(start + i);
+    }
+    return new String(text, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,144 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A response body that is encoded once, up front, as plain bytes and compressed with gzip and
+ * deflate, for data that doesn't change between requests. Each request then only picks the
+ * encoding the client accepts and writes the ready bytes.
+ *
+ * <p>Each encoding has its own strong ETag, derived from a hash of the uncompressed body, so a
+ * client that still has the current body gets 304 Not Modified and no body at all.
+ *
+ * <p>The bigfoot-sightings example has an identical copy of this class, since each example builds on its own.
+ * Make any change to both.
+ */
+public final class PrecompressedBody {
+  private final String contentType;
+  private final byte[] identity;
+  private final byte[] gzip;
+  private final byte[] deflate;
+  private final String etag;
+
+  /** Encodes {@code body} as UTF-8 and compresses it. */
+  public PrecompressedBody(String body, String contentType) throws IOException {
+    this.contentType = contentType;
+    this.identity = body.getBytes(StandardCharsets.UTF_8);
+
+    ByteArrayOutputStream gzipBytes = new ByteArrayOutputStream();
+    try (OutputStream out = new GZIPOutputStream(gzipBytes)) {
+      out.write(identity);
+    }
+    this.gzip = gzipBytes.toByteArray();
+
+    ByteArrayOutputStream deflateBytes = new ByteArrayOutputStream();
+    try (OutputStream out =
+        new DeflaterOutputStream(deflateBytes, new Deflater(Deflater.BEST_COMPRESSION))) {
+      out.write(identity);
+    }
+    this.deflate = deflateBytes.toByteArray();
+
+    this.etag = hash(identity);
+  }
+
+  /**
+   * Sends the body in the best encoding listed in the request's Accept-Encoding header, or sends
+   * 304 if the request's If-None-Match has the current ETag of that encoding.
+   */
+  public void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String acceptEncoding = request.getHeader("Accept-Encoding");
+    String encoding;
+    byte[] body;
+    // Prefer gzip: some clients mistake deflate for raw deflate without the zlib header.
+    if (accepts(acceptEncoding, "gzip")) {
+      encoding = "gzip";
+      body = gzip;
+    } else if (accepts(acceptEncoding, "deflate")) {
+      encoding = "deflate";
+      body = deflate;
+    } else {
+      encoding = null;
+      body = identity;
+    }
+
+    String encodingEtag = "\"" + etag + (encoding == null ? "" : "-" + encoding) + "\"";
+    response.setHeader("ETag", encodingEtag);
+    response.setHeader("Vary", "Accept-Encoding");
+    String ifNoneMatch = request.getHeader("If-None-Match");
+    if (ifNoneMatch != null
+        && (ifNoneMatch.contains(encodingEtag) || ifNoneMatch.trim().equals("*"))) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    response.setContentType(contentType);
+    if (encoding != null) {
+      response.setHeader("Content-Encoding", encoding);
+    }
+    response.setContentLength(body.length);
+    // The shared array goes to the output stream as it is; nothing is copied or encoded per request.
+    response.getOutputStream().write(body);
+  }
+
+  /**
+   * Returns whether the Accept-Encoding header value lists {@code encoding} without "q=0". A missing
+   * header accepts nothing but the plain body.
+   */
+  private static boolean accepts(String acceptEncoding, String encoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String candidate : acceptEncoding.split(",")) {
+      String[] parts = candidate.trim().split(";");
+      if (!parts[0].trim().equalsIgnoreCase(encoding)) {
+        continue;
+      }
+      for (int i = 1; i < parts.length; i++) {
+        String parameter = parts[i].trim().replace(" ", "");
+        if (parameter.matches("q=0(\\.0*)?")) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /** Returns the first 16 bytes of the SHA-256 hash of {@code bytes}, in hex. */
+  private static String hash(byte[] bytes) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+      StringBuilder hex = new StringBuilder();
+      for (int i = 0; i < 16; i++) {
+        hex.append(String.format("%02x", digest[i]));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Every Java platform supports SHA-256.", e);
+    }
+  }
+}
@@ -0,0 +1,179 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Groups points into clusters for every map zoom level ahead of time, so that the clusters in a
+ * viewport can be looked up instead of computed per request.
+ *
+ * <p>At zoom z, the world is a grid of 2^(z + CELL_LEVELS) cells a side, each 32 pixels wide on a
+ * Google Map, and each non-empty cell holds one cluster: its point count and their centroid. Each
+ * level keeps its clusters in arrays sorted by cell column then row, so the cells in a viewport are
+ * found with one binary search per column.
+ */
+public class ClusterPyramid {
+  /** The highest zoom level with its own clusters; deeper zooms use this one. */
+  public static final int MAX_ZOOM = 16;
+
+  private static final int CELL_LEVELS = 3;
+  private static final double MAX_LATITUDE = 85.05112878;
+
+  /** Receives the clusters found by a query. */
+  public interface ClusterVisitor {
+    void visit(double lat, double lng, int count) throws IOException;
+  }
+
+  /** The clusters of one zoom level, as parallel arrays sorted by cell key. */
+  private static class Level {
+    final long[] cellKeys;
+    final double[] lats;
+    final double[] lngs;
+    final int[] counts;
+
+    Level(long[] cellKeys, double[] lats, double[] lngs, int[] counts) {
+      this.cellKeys = cellKeys;
+      this.lats = lats;
+      this.lngs = lngs;
+      this.counts = counts;
+    }
+  }
+
+  private final Level[] levels = new Level[MAX_ZOOM + 1];
+
+  /** Builds the clusters of every zoom level for the given sightings. */
+  public ClusterPyramid(UfoSightings ufoSightings) {
+    int size = ufoSightings.size();
+    double[] lats = new double[size];
+    double[] lngs = new double[size];
+    int[] counts = new int[size];
+    for (int i = 0; i < size; i++) {
+      lats[i] = ufoSightings.getLat(i);
+      lngs[i] = ufoSightings.getLng(i);
+      counts[i] = 1;
+    }
+
+    // Each level merges the clusters of the level below it, whose cells are a quarter of the size.
+    Level level = new Level(null, lats, lngs, counts);
+    for (int zoom = MAX_ZOOM; zoom >= 0; zoom--) {
+      level = merge(level, zoom);
+      levels[zoom] = level;
+    }
+  }
+
+  /**
+   * Passes the clusters at {@code zoom} whose cells overlap the box between the given corners to
+   * {@code visitor}. A box with {@code west > east} crosses the antimeridian.
+   */
+  public void query(double south, double west, double north, double east, int zoom,
+      ClusterVisitor visitor) throws IOException {
+    zoom = Math.max(0, Math.min(MAX_ZOOM, zoom));
+    Level level = levels[zoom];
+    int bits = zoom + CELL_LEVELS;
+    int cellsPerSide = 1 << bits;
+
+    int minX = getCellX(west, bits);
+    int maxX = getCellX(east, bits);
+    int minY = getCellY(north, bits);
+    int maxY = getCellY(south, bits);
+    int columns = Math.min(cellsPerSide,
+        minX <= maxX ? maxX - minX + 1 : cellsPerSide - minX + maxX + 1);
+
+    // A box much wider than the level has clusters is cheaper to check cluster by cluster.
+    if (columns > level.cellKeys.length) {
+      for (int index = 0; index < level.cellKeys.length; index++) {
+        int x = (int) (level.cellKeys[index] >>> 32);
+        int y = (int) level.cellKeys[index];
+        boolean inColumns = minX <= maxX ? x >= minX && x <= maxX : x >= minX || x <= maxX;
+        if (inColumns && y >= minY && y <= maxY) {
+          visitor.visit(level.lats[index], level.lngs[index], level.counts[index]);
+        }
+      }
+      return;
+    }
+
+    for (int column = 0; column < columns; column++) {
+      int x = (minX + column) % cellsPerSide;
+      long lastKey = toCellKey(x, maxY);
+      int index = Arrays.binarySearch(level.cellKeys, toCellKey(x, minY));
+      if (index < 0) {
+        index = -index - 1;
+      }
+      for (; index < level.cellKeys.length && level.cellKeys[index] <= lastKey; index++) {
+        visitor.visit(level.lats[index], level.lngs[index], level.counts[index]);
+      }
+    }
+  }
+
+  /** Returns the clusters of {@code below} merged into the cells of {@code zoom}. */
+  private static Level merge(Level below, int zoom) {
+    int bits = zoom + CELL_LEVELS;
+    int size = below.lats.length;
+    long[] keys = new long[size];
+    for (int i = 0; i < size; i++) {
+      keys[i] = toCellKey(getCellX(below.lngs[i], bits), getCellY(below.lats[i], bits));
+    }
+
+    long[] cellKeys = distinctSorted(keys);
+    double[] latSums = new double[cellKeys.length];
+    double[] lngSums = new double[cellKeys.length];
+    int[] counts = new int[cellKeys.length];
+    for (int i = 0; i < size; i++) {
+      int cell = Arrays.binarySearch(cellKeys, keys[i]);
+      // Weigh each cluster's centroid by its count, so that the merged centroid is the points'.
+      latSums[cell] += below.lats[i] * below.counts[i];
+      lngSums[cell] += below.lngs[i] * below.counts[i];
+      counts[cell] += below.counts[i];
+    }
+    for (int cell = 0; cell < cellKeys.length; cell++) {
+      latSums[cell] /= counts[cell];
+      lngSums[cell] /= counts[cell];
+    }
+    return new Level(cellKeys, latSums, lngSums, counts);
+  }
+
+  /** Returns the distinct values of {@code keys} in ascending order. */
+  private static long[] distinctSorted(long[] keys) {
+    long[] sorted = keys.clone();
+    Arrays.sort(sorted);
+    int distinct = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      if (i == 0 || sorted[i] != sorted[distinct - 1]) {
+        sorted[distinct++] = sorted[i];
+      }
+    }
+    return Arrays.copyOf(sorted, distinct);
+  }
+
+  /** Sorts cells by column, then by row within a column. */
+  private static long toCellKey(int x, int y) {
+    return ((long) x << 32) | y;
+  }
+
+  private static int getCellX(double lng, int bits) {
+    int cellsPerSide = 1 << bits;
+    int x = (int) Math.floor((lng + 180) / 360 * cellsPerSide);
+    return Math.max(0, Math.min(cellsPerSide - 1, x));
+  }
+
+  private static int getCellY(double lat, int bits) {
+    int cellsPerSide = 1 << bits;
+    double sinLat = Math.sin(Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat))));
+    double y = 0.5 - Math.log((1 + sinLat) / (1 - sinLat)) / (4 * Math.PI);
+    return Math.max(0, Math.min(cellsPerSide - 1, (int) Math.floor(y * cellsPerSide)));
+  }
+}
@@ -14,45 +14,121 @@
 
 package com.google.sps.servlets;
 
-import com.google.sps.data.UfoSighting;
+import com.google.sps.CsvLoader;
+import com.google.sps.PrecompressedBody;
+import com.google.sps.data.ClusterPyramid;
+import com.google.sps.data.UfoSightings;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Scanner;
+import java.io.StringWriter;
+import java.util.logging.Logger;
+import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Returns UFO data as a JSON array, e.g. [{"lat": 38.4404675, "lng": -122.7144313}] */
+/**
+ * Returns UFO data as a JSON array, e.g. [{"lat": 38.4404675, "lng": -122.7144313}]
+ *
+ * <p>With the "bbox" (south,west,north,east, as sent by LatLngBounds.toUrlValue) and "zoom"
+ * parameters, only the sightings in the box are returned, with sightings close to each other at
+ * that zoom merged into clusters, e.g. {"lat": 38.44, "lng": -122.71, "count": 12}.
+ */
 @WebServlet("/ufo-data")
 public class UfoDataServlet extends HttpServlet {
 
-  private Collection<UfoSighting> ufoSightings;
+  private static final Logger logger = Logger.getLogger(UfoDataServlet.class.getName());
 
-  @Override
-  public void init() {
-    ufoSightings = new ArrayList<>();
+  private static final Gson gson = new Gson();
+
+  private UfoSightings ufoSightings;
+  private ClusterPyramid clusterPyramid;
+  // The response without bbox never changes, so it is serialized and compressed once.
+  private PrecompressedBody allSightingsBody;
 
-    Scanner scanner = new Scanner(getServletContext().getResourceAsStream("/WEB-INF/ufo-data.csv"));
-    while (scanner.hasNextLine()) {
-      String line = scanner.nextLine();
-      String[] cells = line.split(",");
+  @Override
+  public void init() throws ServletException {
+    double[][] columns;
+    try {
+      columns = CsvLoader.loadDoubles(getServletContext(), "/WEB-INF/ufo-data.csv", 2);
+    } catch (IOException e) {
+      throw new ServletException("Could not load the UFO data.", e);
+    }
+    // Set the "offHeap" init parameter to keep the sightings out of the Java heap.
+    boolean offHeap = Boolean.parseBoolean(getInitParameter("offHeap"));
+    ufoSightings = new UfoSightings(columns[0], columns[1], offHeap);
 
-      double lat = Double.parseDouble(cells[0]);
-      double lng = Double.parseDouble(cells[1]);
+    long startNanos = System.nanoTime();
+    clusterPyramid = new ClusterPyramid(ufoSightings);
+    logger.info(String.format("Clustered %d sightings for zoom levels 0 to %d in %d ms.",
+        ufoSightings.size(), ClusterPyramid.MAX_ZOOM, (System.nanoTime() - startNanos) / 1000000));
 
-      ufoSightings.add(new UfoSighting(lat, lng));
+    try {
+      StringWriter json = new StringWriter();
+      JsonWriter writer = gson.newJsonWriter(json);
+      ufoSightings.writeJson(writer);
+      writer.flush();
+      allSightingsBody = new PrecompressedBody(json.toString(), "application/json");
+    } catch (IOException e) {
+      throw new ServletException("Could not serialize the UFO data.", e);
     }
-    scanner.close();
   }
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String bbox = request.getParameter("bbox");
+    if (bbox != null) {
+      getClusters(bbox, request.getParameter("zoom"), response);
+      return;
+    }
+
+    allSightingsBody.serve(request, response);
+  }
+
+  /** Writes the clusters in the box at the given zoom, with single sightings written as sightings. */
+  private void getClusters(String bbox, String zoomString, HttpServletResponse response)
+      throws IOException {
+    String[] corners = bbox.split(",");
+    double south;
+    double west;
+    double north;
+    double east;
+    int zoom;
+    try {
+      if (corners.length != 4) {
+        throw new NumberFormatException("Expected 4 coordinates in bbox: " + bbox);
+      }
+      south = Double.parseDouble(corners[0]);
+      west = Double.parseDouble(corners[1]);
+      north = Double.parseDouble(corners[2]);
+      east = Double.parseDouble(corners[3]);
+      zoom = Integer.parseInt(zoomString);
+    } catch (NumberFormatException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid bbox or zoom.");
+      return;
+    }
+
     response.setContentType("application/json");
-    Gson gson = new Gson();
-    String json = gson.toJson(ufoSightings);
-    response.getWriter().println(json);
+    JsonWriter writer = gson.newJsonWriter(response.getWriter());
+    writer.beginArray();
+    if (zoom > ClusterPyramid.MAX_ZOOM) {
+      // Zoomed in past the last cluster level, the few sightings in view are sent as they are.
+      ufoSightings.scan(south, west, north, east,
+          (lat, lng) -> UfoSightings.writeSighting(writer, lat, lng));
+    } else {
+      clusterPyramid.query(south, west, north, east, zoom, (lat, lng, count) -> {
+        writer.beginObject();
+        writer.name("lat").value(lat);
+        writer.name("lng").value(lng);
+        if (count > 1) {
+          writer.name("count").value(count);
+        }
+        writer.endObject();
+      });
+    }
+    writer.endArray();
+    writer.flush();
   }
 }
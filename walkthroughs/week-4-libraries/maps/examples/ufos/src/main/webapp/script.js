@@ -12,16 +12,38 @@
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
-/** Fetches UFO sightings data from the server and displays it in a map. */
+/** The markers currently on the map, replaced whenever the map moves. */
+let markers = [];
+
+/**
+ * Creates a map and shows the UFO sightings in view, fetched from the server again whenever the
+ * user stops panning or zooming. Sightings that are close together come back as one cluster.
+ */
 function createUfoSightingsMap() {
-  fetch('/ufo-data').then(response => response.json()).then((ufoSightings) => {
-    const map = new google.maps.Map(
-        document.getElementById('map'),
-        {center: {lat: 35.78613674, lng: -119.4491591}, zoom: 7});
+  const map = new google.maps.Map(
+      document.getElementById('map'),
+      {center: {lat: 35.78613674, lng: -119.4491591}, zoom: 7});
+
+  map.addListener('idle', () => {
+    const params = new URLSearchParams();
+    params.append('bbox', map.getBounds().toUrlValue());
+    params.append('zoom', map.getZoom());
 
-    ufoSightings.forEach((ufoSighting) => {
-      new google.maps.Marker(
-          {position: {lat: ufoSighting.lat, lng: ufoSighting.lng}, map: map});
+    fetch('/ufo-data?' + params.toString()).then(response => response.json()).then((ufoSightings) => {
+      markers.forEach((marker) => marker.setMap(null));
+      markers = ufoSightings.map((ufoSighting) => {
+        const marker = new google.maps.Marker(
+            {position: {lat: ufoSighting.lat, lng: ufoSighting.lng}, map: map});
+        if (ufoSighting.count != null) {
+          // Label clusters with their size, and zoom in on them when clicked.
+          marker.setLabel(String(ufoSighting.count));
+          marker.addListener('click', () => {
+            map.setZoom(map.getZoom() + 2);
+            map.panTo(marker.getPosition());
+          });
+        }
+        return marker;
+      });
     });
   });
 }
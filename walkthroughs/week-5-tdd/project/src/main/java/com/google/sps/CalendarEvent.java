@@ -0,0 +1,95 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Like {@link Event}, a group of people meeting and therefore busy, but at instants that can fall
+ * on any day rather than at minutes of a single day. Calendar events are read-only.
+ */
+public final class CalendarEvent {
+  private final String title;
+  private final InstantRange when;
+  private final Set<String> attendees = new HashSet<>();
+  private final Recurrence recurrence;
+
+  /**
+   * Creates a new event.
+   *
+   * @param title The human-readable name for the event. Must be non-null.
+   * @param when The time when the event takes place. Must be non-null.
+   * @param attendees The collection of people attending the event. Must be non-null.
+   */
+  public CalendarEvent(String title, InstantRange when, Collection<String> attendees) {
+    this(title, when, attendees, null);
+  }
+
+  /**
+   * Creates a new event that repeats.
+   *
+   * @param title The human-readable name for the event. Must be non-null.
+   * @param when The time of the first occurrence of the event. Must be non-null.
+   * @param attendees The collection of people attending the event. Must be non-null.
+   * @param recurrence How the event repeats, or null if it doesn't.
+   */
+  public CalendarEvent(
+      String title, InstantRange when, Collection<String> attendees, Recurrence recurrence) {
+    if (title == null) {
+      throw new IllegalArgumentException("title cannot be null");
+    }
+
+    if (when == null) {
+      throw new IllegalArgumentException("when cannot be null");
+    }
+
+    if (attendees == null) {
+      throw new IllegalArgumentException("attendees cannot be null. Use empty array instead.");
+    }
+
+    this.title = title;
+    this.when = when;
+    this.attendees.addAll(attendees);
+    this.recurrence = recurrence;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  /**
+   * Returns when the event happens or, for a recurring event, when it first happens.
+   */
+  public InstantRange getWhen() {
+    return when;
+  }
+
+  /**
+   * Returns how the event repeats, or null if it happens only once.
+   */
+  public Recurrence getRecurrence() {
+    return recurrence;
+  }
+
+  /**
+   * Returns a read-only set of required attendees for this event.
+   */
+  public Set<String> getAttendees() {
+    return Collections.unmodifiableSet(attendees);
+  }
+}
@@ -0,0 +1,171 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The busy minutes of a day, one bit per minute in 23 longs. Combining the schedules of several
+ * people is then an OR of 23 words, and free time is found by scanning for runs of clear bits a
+ * word at a time, without sorting any time ranges.
+ */
+public final class DayBitmap {
+  /** The number of minutes in a day, which is also the end of {@link TimeRange#WHOLE_DAY}. */
+  public static final int MINUTES_PER_DAY = TimeRange.END_OF_DAY + 1;
+
+  private static final int WORDS = (MINUTES_PER_DAY + Long.SIZE - 1) / Long.SIZE;
+
+  // Bit (minute % 64) of words[minute / 64] is set if the minute is busy. The bits after the last
+  // minute of the day are always clear.
+  private final long[] words = new long[WORDS];
+
+  /** Marks the minutes of {@code range} as busy, ignoring any part outside of the day. */
+  public void markBusy(TimeRange range) {
+    markBusy(range.start(), range.end());
+  }
+
+  /** Marks the minutes from {@code from} to {@code to}, exclusive, as busy, within the day. */
+  public void markBusy(int from, int to) {
+    from = Math.max(0, from);
+    to = Math.min(MINUTES_PER_DAY, to);
+    if (from >= to) {
+      return;
+    }
+    int firstWord = from / Long.SIZE;
+    int lastWord = (to - 1) / Long.SIZE;
+    // Shifts only use the low 6 bits of the count, so these are the masks from bit (from % 64) up,
+    // and up to bit ((to - 1) % 64).
+    long firstMask = -1L << from;
+    long lastMask = -1L >>> (Long.SIZE - to % Long.SIZE) % Long.SIZE;
+    if (firstWord == lastWord) {
+      words[firstWord] |= firstMask & lastMask;
+      return;
+    }
+    words[firstWord] |= firstMask;
+    for (int i = firstWord + 1; i < lastWord; i++) {
+      words[i] = -1L;
+    }
+    words[lastWord] |= lastMask;
+  }
+
+  /** Marks every minute that is busy in {@code other} as busy here too. */
+  public void or(DayBitmap other) {
+    for (int i = 0; i < WORDS; i++) {
+      words[i] |= other.words[i];
+    }
+  }
+
+  public boolean isBusy(int minute) {
+    return (words[minute / Long.SIZE] & (1L << minute)) != 0;
+  }
+
+  /** Returns whether every minute from {@code from} to {@code to}, exclusive, is free. */
+  public boolean isFree(int from, int to) {
+    if (from >= to) {
+      return true;
+    }
+    return nextBusy(from) >= to;
+  }
+
+  /** Returns the first busy minute from {@code from} on, or MINUTES_PER_DAY if there is none. */
+  public int nextBusy(int from) {
+    if (from >= MINUTES_PER_DAY) {
+      return MINUTES_PER_DAY;
+    }
+    int i = from / Long.SIZE;
+    long word = words[i] & (-1L << from);
+    while (word == 0) {
+      if (++i == WORDS) {
+        return MINUTES_PER_DAY;
+      }
+      word = words[i];
+    }
+    return i * Long.SIZE + Long.numberOfTrailingZeros(word);
+  }
+
+  /** Returns the first free minute from {@code from} on, or MINUTES_PER_DAY if there is none. */
+  public int nextFree(int from) {
+    if (from >= MINUTES_PER_DAY) {
+      return MINUTES_PER_DAY;
+    }
+    int i = from / Long.SIZE;
+    long word = ~words[i] & (-1L << from);
+    while (word == 0) {
+      if (++i == WORDS) {
+        return MINUTES_PER_DAY;
+      }
+      word = ~words[i];
+    }
+    return Math.min(MINUTES_PER_DAY, i * Long.SIZE + Long.numberOfTrailingZeros(word));
+  }
+
+  /**
+   * Marks, in {@code target}, every minute that is free here but follows a busy minute: the minutes
+   * at which this schedule's busy times end.
+   */
+  public void markBusyEnds(DayBitmap target) {
+    long carry = 0;
+    for (int i = 0; i < WORDS; i++) {
+      long previousMinutes = (words[i] << 1) | carry;
+      carry = words[i] >>> (Long.SIZE - 1);
+      target.words[i] |= previousMinutes & ~words[i];
+    }
+    // A busy last minute ends at MINUTES_PER_DAY, which isn't a minute of the day.
+    target.words[WORDS - 1] &= -1L >>> (WORDS * Long.SIZE - MINUTES_PER_DAY);
+  }
+
+  /**
+   * Returns the runs of free minutes that are at least {@code duration} minutes long, in order. As
+   * with the list-based search, a run that lasts until the end of the day is a range that includes
+   * {@link TimeRange#END_OF_DAY}, and its length is counted up to that minute.
+   */
+  public List<TimeRange> findFreeRanges(long duration) {
+    List<TimeRange> ranges = new ArrayList<>();
+    int start = nextFree(0);
+    while (start < MINUTES_PER_DAY) {
+      int end = nextBusy(start);
+      if (end == MINUTES_PER_DAY) {
+        if (TimeRange.END_OF_DAY - start >= duration) {
+          ranges.add(TimeRange.fromStartEnd(start, TimeRange.END_OF_DAY, true));
+        }
+        break;
+      }
+      if (end - start >= duration) {
+        ranges.add(TimeRange.fromStartEnd(start, end, false));
+      }
+      start = nextFree(end);
+    }
+    return ranges;
+  }
+
+  /** Returns a bitmap with the same busy minutes, which can be changed independently. */
+  public DayBitmap copy() {
+    DayBitmap copy = new DayBitmap();
+    System.arraycopy(words, 0, copy.words, 0, WORDS);
+    return copy;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof DayBitmap && Arrays.equals(words, ((DayBitmap) other).words);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(words);
+  }
+}
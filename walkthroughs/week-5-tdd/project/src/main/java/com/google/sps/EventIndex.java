@@ -0,0 +1,200 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The busy times of each attendee, so that a query only looks at the times of the people it asks
+ * about instead of walking every event. Each attendee's busy times are kept as a sorted, merged
+ * {@code int[]} of {@code [start0, end0, start1, end1, ...]}.
+ *
+ * <p>Events can be added and removed one at a time. That only changes the times of the event's
+ * attendees, whose merged arrays are rebuilt the next time they are asked for.
+ */
+public final class EventIndex {
+  private static final int[] NO_INTERVALS = new int[0];
+
+  /** The event times of one attendee. */
+  private static final class AttendeeTimes {
+    // The times of the attendee's events, as (start << 32 | end), sorted. Sorting these longs sorts
+    // the times by start and then by end, and a time can be found with a binary search.
+    private long[] times = new long[4];
+    private int size;
+    // The merged times, or null if they need to be rebuilt.
+    private int[] merged;
+
+    /** Adds {@code time} at the end, leaving the times to be sorted by the caller. */
+    void append(long time) {
+      if (size == times.length) {
+        times = Arrays.copyOf(times, size * 2);
+      }
+      times[size++] = time;
+      merged = null;
+    }
+
+    void add(long time) {
+      int index = Arrays.binarySearch(times, 0, size, time);
+      if (index < 0) {
+        index = -index - 1;
+      }
+      if (size == times.length) {
+        times = Arrays.copyOf(times, size * 2);
+      }
+      System.arraycopy(times, index, times, index + 1, size - index);
+      times[index] = time;
+      size++;
+      merged = null;
+    }
+
+    boolean remove(long time) {
+      int index = Arrays.binarySearch(times, 0, size, time);
+      if (index < 0) {
+        return false;
+      }
+      System.arraycopy(times, index + 1, times, index, size - index - 1);
+      size--;
+      merged = null;
+      return true;
+    }
+
+    int[] getMerged() {
+      if (merged == null) {
+        merged = merge(times, size);
+      }
+      return merged;
+    }
+  }
+
+  private final Map<String, AttendeeTimes> attendeeTimes = new HashMap<>();
+
+  public EventIndex() {}
+
+  /** Creates an index of the times of every attendee of {@code events}. */
+  public EventIndex(Collection<Event> events) {
+    this(events, null);
+  }
+
+  /**
+   * Creates an index of the times of {@code attendees} in {@code events}, or of every attendee if
+   * {@code attendees} is null.
+   */
+  EventIndex(Collection<Event> events, Set<String> attendees) {
+    // Sorting each attendee's times once is faster than inserting them one at a time in order.
+    for (Event event : events) {
+      long time = toLong(event.getWhen());
+      for (String attendee : event.getAttendees()) {
+        if (attendees == null || attendees.contains(attendee)) {
+          getOrCreate(attendee).append(time);
+        }
+      }
+    }
+    for (AttendeeTimes times : attendeeTimes.values()) {
+      Arrays.sort(times.times, 0, times.size);
+    }
+  }
+
+  /** Adds the time of {@code event} to the busy times of each of its attendees. */
+  public synchronized void add(Event event) {
+    long time = toLong(event.getWhen());
+    for (String attendee : event.getAttendees()) {
+      getOrCreate(attendee).add(time);
+    }
+  }
+
+  /**
+   * Removes the time of {@code event} from the busy times of each of its attendees. Returns false
+   * if it wasn't there, e.g. because the event was never added.
+   */
+  public synchronized boolean remove(Event event) {
+    long time = toLong(event.getWhen());
+    boolean removed = false;
+    for (String attendee : event.getAttendees()) {
+      AttendeeTimes times = attendeeTimes.get(attendee);
+      if (times != null && times.remove(time)) {
+        removed = true;
+        if (times.size == 0) {
+          attendeeTimes.remove(attendee);
+        }
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Returns the busy times of {@code attendee}, sorted and merged where they overlap or touch, as
+   * {@code [start0, end0, start1, end1, ...]}. The array is shared, so it must not be changed.
+   */
+  public synchronized int[] getBusyIntervals(String attendee) {
+    AttendeeTimes times = attendeeTimes.get(attendee);
+    return times == null ? NO_INTERVALS : times.getMerged();
+  }
+
+  private AttendeeTimes getOrCreate(String attendee) {
+    AttendeeTimes times = attendeeTimes.get(attendee);
+    if (times == null) {
+      times = new AttendeeTimes();
+      attendeeTimes.put(attendee, times);
+    }
+    return times;
+  }
+
+  /** Returns the union of several merged interval arrays, merged in the same way. */
+  static int[] union(List<int[]> intervalArrays) {
+    int count = 0;
+    for (int[] intervals : intervalArrays) {
+      count += intervals.length / 2;
+    }
+    long[] times = new long[count];
+    int size = 0;
+    for (int[] intervals : intervalArrays) {
+      for (int i = 0; i < intervals.length; i += 2) {
+        times[size++] = toLong(intervals[i], intervals[i + 1]);
+      }
+    }
+    Arrays.sort(times);
+    return merge(times, size);
+  }
+
+  /** Merges the first {@code size} sorted times into {@code [start0, end0, ...]}. */
+  private static int[] merge(long[] times, int size) {
+    int[] merged = new int[size * 2];
+    int length = 0;
+    for (int i = 0; i < size; i++) {
+      int start = (int) (times[i] >> 32);
+      int end = (int) times[i];
+      if (length > 0 && start <= merged[length - 1]) {
+        merged[length - 1] = Math.max(merged[length - 1], end);
+      } else {
+        merged[length++] = start;
+        merged[length++] = end;
+      }
+    }
+    return Arrays.copyOf(merged, length);
+  }
+
+  private static long toLong(TimeRange range) {
+    return toLong(range.start(), range.end());
+  }
+
+  private static long toLong(int start, int end) {
+    return ((long) start << 32) | (end & 0xFFFFFFFFL);
+  }
+}
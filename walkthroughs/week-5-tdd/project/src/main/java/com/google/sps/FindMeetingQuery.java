@@ -12,22 +12,31 @@
 
 package com.google.sps;
 
-import com.google.common.collect.ImmutableList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 public final class FindMeetingQuery {
-  private List<TimeRange> attendeesEventTimes;
-  private Map<String, List<TimeRange>> optionalAttendeesEventTimes;
-  private List<List<String>> optionalAttendeesCombinations;
+  /** The ways of working out when attendees are free. Both give the same answers. */
+  public enum Engine {
+    /** Sweeps the merged busy intervals of the attendees. */
+    INTERVALS,
+    /** Marks each attendee's busy minutes in a {@link DayBitmap}. */
+    BITMAP
+  }
+
+  private final Engine engine;
+
+  public FindMeetingQuery() {
+    this(Engine.INTERVALS);
+  }
+
+  public FindMeetingQuery(Engine engine) {
+    this.engine = engine;
+  }
 
   /** 
    * Finds a list of times when the requested event can happen, given the list of current events and
@@ -36,6 +45,16 @@ public final class FindMeetingQuery {
    * empty) and a duration of the meeting in minutes.
    */
   public Collection<TimeRange> query(Collection<Event> events, MeetingRequest request) {
+    HashSet<String> people = new HashSet<>(request.getAttendees());
+    people.addAll(request.getOptionalAttendees());
+    return query(new EventIndex(events, people), request);
+  }
+
+  /**
+   * Finds the times when the requested event can happen like {@code query} above, reading the busy
+   * times of only the requested attendees from {@code index}.
+   */
+  public Collection<TimeRange> query(EventIndex index, MeetingRequest request) {
     HashSet<String> attendees = new HashSet<>(request.getAttendees());
     HashSet<String> optionalAttendees = new HashSet<>(request.getOptionalAttendees());
     // On the webapp, if form is left empty, an empty string is obtained. Remove them here.
@@ -44,120 +63,225 @@ public final class FindMeetingQuery {
 
     long duration = request.getDuration();
 
-    // Populate {@code attendeesEventTimes} and {@code optionalAttendeesEventTimes}.
-    getAttendeesEventTimes(events, attendees, optionalAttendees);
+    List<int[]> mandatoryIntervals = new ArrayList<>();
+    for (String attendee : attendees) {
+      mandatoryIntervals.add(index.getBusyIntervals(attendee));
+    }
+    int[] mandatoryBusy = EventIndex.union(mandatoryIntervals);
+    // Optional attendees without events can always attend, so they don't change the answer.
+    List<int[]> optionalBusy = new ArrayList<>();
+    for (String attendee : optionalAttendees) {
+      int[] intervals = index.getBusyIntervals(attendee);
+      if (intervals.length > 0) {
+        optionalBusy.add(intervals);
+      }
+    }
 
-    Collection<TimeRange> possibleTimes = new ArrayList<>();
+    if (engine == Engine.BITMAP) {
+      return queryBitmaps(attendees.isEmpty(), mandatoryBusy, optionalBusy, duration);
+    }
+
+    // The busy times that need to be avoided when scheduling.
+    List<int[]> busy = new ArrayList<>();
+    busy.add(mandatoryBusy);
     if (attendees.isEmpty()) {
       // Case: No mandatory attendee, only consider availabilities of optional attendees.
+      busy.addAll(optionalBusy);
+    } else {
+      // Case: There are mandatory attendees, consider the largest group of optional attendees who
+      // can attend together with them and ignore the others.
+      busy.addAll(findMostAvailableOptionalAttendees(mandatoryBusy, optionalBusy, duration));
+    }
+    return findTimeRangeGaps(EventIndex.union(busy), duration);
+  }
 
-      // A list of current events' time ranges that need to be avoided when scheduling.
-      List<TimeRange> eventTimes = new ArrayList<>();
-      for (List<TimeRange> timeList : this.optionalAttendeesEventTimes.values()) {
-        eventTimes.addAll(timeList);
+  /**
+   * Returns the busy times of the largest group of optional attendees (among those with events) who
+   * are all free, along with the mandatory attendees, for some meeting of the given duration. If
+   * several groups are that large, returns the one free for the earliest such meeting.
+   *
+   * <p>Any gap that fits the meeting begins at the start of the day or at the end of an event, so
+   * only meetings starting at those times are tried. They are swept in order, keeping one position
+   * per attendee in that attendee's busy intervals, so each try only counts who is free. That takes
+   * O(E log E + n * E) time for E events and n optional attendees, instead of trying every group.
+   */
+  private static List<int[]> findMostAvailableOptionalAttendees(
+      int[] mandatoryBusy, List<int[]> optionalBusyList, long duration) {
+    int[][] optionalBusy = optionalBusyList.toArray(new int[0][]);
+    int[] meetingStarts = getMeetingStarts(mandatoryBusy, optionalBusy);
+
+    // Index of the first busy interval of each attendee that ends after the current meeting start.
+    int mandatoryNext = 0;
+    int[] optionalNext = new int[optionalBusy.length];
+    int bestStart = -1;
+    int bestCount = -1;
+    for (int start : meetingStarts) {
+      long end = start + duration;
+      if (end > TimeRange.END_OF_DAY) {
+        break;
       }
-      Collections.sort(eventTimes, TimeRange.ORDER_BY_START);
-      possibleTimes = findTimeRangeGaps(eventTimes, duration);
-    } else {
-      // Case: There are mandatory attendees, consider optional attendees who can possibly attend
-      // and ignore those who can't. 
-      List<TimeRange> eventTimes = new ArrayList<>(this.attendeesEventTimes);
-
-      // Find the time slot(s) that maximize the number of optional attendees who can attend. Count
-      // down from the maximum number of optional attendees and find all combinations of that number
-      // of attendees. Once we find a combination where scheduling is possible, we've found the
-      // maximal group of attendees.
-      for (int num = optionalAttendees.size(); num > 0; num--) {
-        ImmutableList<String> optionalAttendeesList = ImmutableList.copyOf(optionalAttendees);
-        // Get all combinations of size num of the optional attendees.
-        getAllCombinations(optionalAttendeesList, optionalAttendeesList.size(), num);
-
-        for (List<String> optionalAttendeesChosen : optionalAttendeesCombinations) {
-          for (String attendee : optionalAttendeesChosen) {
-            eventTimes.addAll(this.optionalAttendeesEventTimes.get(attendee));
-          }
-          Collections.sort(eventTimes, TimeRange.ORDER_BY_START);
-          possibleTimes = findTimeRangeGaps(eventTimes, duration);
-          if (!possibleTimes.isEmpty()) {
-            // We've found a combination where scheduling is possible, so those are the desired time
-            // slot(s).
-            return possibleTimes;
-          }
-          // Re-initialize unavailable time ranges with those of the mandatory attendees.
-          eventTimes = new ArrayList<>(attendeesEventTimes);
+      mandatoryNext = skipEndedIntervals(mandatoryBusy, mandatoryNext, start);
+      if (!isFreeFrom(mandatoryBusy, mandatoryNext, end)) {
+        continue;
+      }
+      int count = 0;
+      for (int i = 0; i < optionalBusy.length; i++) {
+        optionalNext[i] = skipEndedIntervals(optionalBusy[i], optionalNext[i], start);
+        if (isFreeFrom(optionalBusy[i], optionalNext[i], end)) {
+          count++;
+        }
+      }
+      if (count > bestCount) {
+        bestStart = start;
+        bestCount = count;
+        if (count == optionalBusy.length) {
+          break;
         }
       }
-      // Calculate time ranges when there are no optional attendees, or none of the optional
-      // attendees can fit the schedule.
-      possibleTimes = findTimeRangeGaps(eventTimes, duration);
     }
-    return possibleTimes;
+
+    List<int[]> mostAvailable = new ArrayList<>();
+    if (bestCount <= 0) {
+      return mostAvailable;
+    }
+    for (int i = 0; i < optionalBusy.length; i++) {
+      int next = skipEndedIntervals(optionalBusy[i], 0, bestStart);
+      if (isFreeFrom(optionalBusy[i], next, bestStart + duration)) {
+        mostAvailable.add(optionalBusy[i]);
+      }
+    }
+    return mostAvailable;
   }
 
   /**
-   * Recursive helper function used to find all combinations of the given size of the elements of
-   * a given list.
-   * @param inputList The list of optional attendees to consider. This is immutable.
-   * @param currentCombination Temporary array to store current combination of optional attendees.
-   * @param startIndex Starting index in the input array to consider for the current combination.
-   * @param endIndex Ending index in the input array to consider for the current combination.
-   * @param index Current index to be set in the current combination list.
-   * @param size The size of combinations to be found.
+   * Finds the meeting times like {@code query} does, with one {@link DayBitmap} of busy minutes for
+   * the mandatory attendees together and one for each optional attendee.
    */
-  private void combinationUtil(
-      ImmutableList<String> inputList,
-      ArrayList<String> currentCombination,
-      int startIndex,
-      int endIndex,
-      int index,
-      int size) {
-    if (index == size) {
-      // Combination is ready to be added, add it to the list.
-      this.optionalAttendeesCombinations.add(currentCombination);
-      return;
-    }
-
-    // Replace index with all possible elements. The condition "end-i+1 >= r-index" makes sure that
-    // including one element at index will make a combination with remaining elements at remaining
-    // positions.
-    for (int i = startIndex; i <= endIndex && endIndex - i + 1 >= size - index; i++) {
-      currentCombination.set(index, inputList.get(i));
-      combinationUtil(inputList, currentCombination, i + 1, endIndex, index + 1, size);
+  private static Collection<TimeRange> queryBitmaps(boolean noMandatoryAttendees,
+      int[] mandatoryIntervals, List<int[]> optionalIntervals, long duration) {
+    DayBitmap mandatoryBusy = toBitmap(mandatoryIntervals);
+    List<DayBitmap> optionalBusy = new ArrayList<>();
+    for (int[] intervals : optionalIntervals) {
+      optionalBusy.add(toBitmap(intervals));
     }
+
+    DayBitmap busy = mandatoryBusy.copy();
+    if (noMandatoryAttendees) {
+      for (DayBitmap optional : optionalBusy) {
+        busy.or(optional);
+      }
+      return busy.findFreeRanges(duration);
+    }
+
+    // As in findMostAvailableOptionalAttendees, only meetings starting at the start of the day or
+    // where someone's busy time ends need to be tried.
+    DayBitmap meetingStarts = new DayBitmap();
+    mandatoryBusy.markBusyEnds(meetingStarts);
+    for (DayBitmap optional : optionalBusy) {
+      optional.markBusyEnds(meetingStarts);
+    }
+    int bestStart = -1;
+    int bestCount = 0;
+    for (int start = TimeRange.START_OF_DAY;
+        start + duration <= TimeRange.END_OF_DAY;
+        start = meetingStarts.nextBusy(start + 1)) {
+      int end = (int) (start + duration);
+      if (!mandatoryBusy.isFree(start, end)) {
+        continue;
+      }
+      int count = 0;
+      for (DayBitmap optional : optionalBusy) {
+        if (optional.isFree(start, end)) {
+          count++;
+        }
+      }
+      if (count > bestCount) {
+        bestStart = start;
+        bestCount = count;
+      }
+    }
+
+    if (bestStart >= 0) {
+      for (DayBitmap optional : optionalBusy) {
+        if (optional.isFree(bestStart, (int) (bestStart + duration))) {
+          busy.or(optional);
+        }
+      }
+    }
+    return busy.findFreeRanges(duration);
+  }
+
+  private static DayBitmap toBitmap(int[] intervals) {
+    DayBitmap bitmap = new DayBitmap();
+    for (int i = 0; i < intervals.length; i += 2) {
+      bitmap.markBusy(intervals[i], intervals[i + 1]);
+    }
+    return bitmap;
+  }
+
+  /** Returns the start of the day and the end of every busy interval, sorted without duplicates. */
+  private static int[] getMeetingStarts(int[] mandatoryBusy, int[][] optionalBusy) {
+    int count = 1 + mandatoryBusy.length / 2;
+    for (int[] busy : optionalBusy) {
+      count += busy.length / 2;
+    }
+    int[] starts = new int[count];
+    int length = 0;
+    starts[length++] = TimeRange.START_OF_DAY;
+    for (int i = 1; i < mandatoryBusy.length; i += 2) {
+      starts[length++] = mandatoryBusy[i];
+    }
+    for (int[] busy : optionalBusy) {
+      for (int i = 1; i < busy.length; i += 2) {
+        starts[length++] = busy[i];
+      }
+    }
+    Arrays.sort(starts);
+    int unique = 0;
+    for (int i = 0; i < starts.length; i++) {
+      if (i == 0 || starts[i] != starts[i - 1]) {
+        starts[unique++] = starts[i];
+      }
+    }
+    return Arrays.copyOf(starts, unique);
   }
 
   /**
-   * Returns all combinations of the given size in the given list of optional attendees, which has 
-   * size n.
+   * Returns the index of the first merged interval, from interval {@code next} on, that ends after
+   * {@code time}.
    */
-  private void getAllCombinations(ImmutableList<String> inputList, int n, int size) { 
-    this.optionalAttendeesCombinations = new ArrayList<>();
-
-    // A temporary array to store all possible combinations, one at a time.
-    ArrayList<String> currentCombination = new ArrayList(Arrays.asList(new String[size]));
+  private static int skipEndedIntervals(int[] busy, int next, int time) {
+    while (next < busy.length / 2 && busy[2 * next + 1] <= time) {
+      next++;
+    }
+    return next;
+  }
 
-    combinationUtil(inputList, currentCombination, 0, n - 1, 0, size); 
+  /**
+   * Returns whether interval {@code next}, the first one ending after the meeting starts, leaves
+   * the attendee free until {@code end}.
+   */
+  private static boolean isFreeFrom(int[] busy, int next, long end) {
+    return next == busy.length / 2 || busy[2 * next] >= end;
   }
 
   /** 
-   * Finds a collection of time ranges that occur as gaps between the specified event times and have
-   * length longer than the specified duration.
+   * Finds a collection of time ranges that occur as gaps between the specified merged busy
+   * intervals and have length longer than the specified duration.
    */
-  private Collection<TimeRange> findTimeRangeGaps(List<TimeRange> eventTimes, long duration) {
+  private static Collection<TimeRange> findTimeRangeGaps(int[] busy, long duration) {
     Collection<TimeRange> possibleTimes = new ArrayList<>();
     int lastEndTime = TimeRange.START_OF_DAY;
-    TimeRange currentRange;
-    for (int i = 0; i < eventTimes.size(); i++) {
-      currentRange = eventTimes.get(i);
-      if (currentRange.start() <= lastEndTime) {
+    for (int i = 0; i < busy.length; i += 2) {
+      if (busy[i] <= lastEndTime) {
         // Case: There is an overlap, update the previous end marker.
-        lastEndTime = Math.max(lastEndTime, currentRange.end());  
+        lastEndTime = Math.max(lastEndTime, busy[i + 1]);
       } else {
         // Case: There is a gap, check if it can fit the requested event.
-        if (currentRange.start() - lastEndTime >= duration) {
-          possibleTimes.add(TimeRange.fromStartEnd(lastEndTime, currentRange.start(), false));
+        if (busy[i] - lastEndTime >= duration) {
+          possibleTimes.add(TimeRange.fromStartEnd(lastEndTime, busy[i], false));
         }
-        lastEndTime = currentRange.end();
+        lastEndTime = busy[i + 1];
       }
     }
 
@@ -166,35 +290,4 @@ public final class FindMeetingQuery {
     }
     return possibleTimes;
   }
-
-  /**
-   * Records the time ranges of events that involve any of the mandatory attendees. Records the
-   * optional attendees and the corresponding event times that involve each of them.
-   */
-  private void getAttendeesEventTimes(
-      Collection<Event> events, HashSet<String> attendees, HashSet<String> optionalAttendees) {
-    this.attendeesEventTimes = new ArrayList<>();
-    this.optionalAttendeesEventTimes = new HashMap<>();
-    Iterator<Event> eventsIterator = events.iterator();
-    while (eventsIterator.hasNext()) {
-      Event currentEvent = eventsIterator.next();
-      Iterator<String> attendeesItr = currentEvent.getAttendees().iterator();
-      while (attendeesItr.hasNext()) {
-        String currentAttendee = attendeesItr.next();
-        if (attendees.contains(currentAttendee)) {
-          // Add event time to list if it has a mandatory attendee.
-          this.attendeesEventTimes.add(currentEvent.getWhen());
-        }
-        if (optionalAttendees.contains(currentAttendee)) {
-          // Add event time to map if it has an optional attendee.
-          if (this.optionalAttendeesEventTimes.containsKey(currentAttendee)) {
-            this.optionalAttendeesEventTimes.get(currentAttendee).add(currentEvent.getWhen());
-          } else {
-            this.optionalAttendeesEventTimes.put(currentAttendee, 
-                new ArrayList<>(Arrays.asList(currentEvent.getWhen())));
-          }
-        }
-      }
-    }
-  }
 }
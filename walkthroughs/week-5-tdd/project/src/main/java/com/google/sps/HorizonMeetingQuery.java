@@ -0,0 +1,113 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Finds meeting times within a horizon that can span many days, in the time zones of the
+ * attendees' working hours. Instead of querying each day separately, the attendees' events and the
+ * times outside their working hours are merged into one stream of busy intervals, ordered by start,
+ * and the free time is found in one pass over it. Times are counted in whole minutes since the
+ * epoch, like {@link TimeRange} counts the minutes of a day.
+ *
+ * <p>Recurring events are expanded as the stream is read, so only their rules are held in memory
+ * rather than every occurrence in the horizon.
+ */
+public final class HorizonMeetingQuery {
+  /**
+   * Returns the times within the request's horizon, in order, when every attendee is free and
+   * within their working hours for at least the request's duration.
+   */
+  public List<InstantRange> query(
+      Collection<CalendarEvent> events, HorizonMeetingRequest request) {
+    // Meetings start and end on whole minutes inside of the horizon.
+    long horizonStart = IntervalStreams.ceilMinute(request.getHorizon().start());
+    long horizonEnd = IntervalStreams.floorMinute(request.getHorizon().end());
+    long duration = (request.getDuration().getSeconds() + 59) / 60;
+
+    List<IntervalStream> busy = new ArrayList<>();
+    busy.add(getEventIntervals(events, request, horizonStart, horizonEnd));
+    // Recurring events add one stream each, which generates occurrences only as it is read.
+    for (CalendarEvent event : events) {
+      if (event.getRecurrence() != null && hasAnyAttendee(event, request)) {
+        busy.add(IntervalStreams.occurrences(event, horizonStart, horizonEnd));
+      }
+    }
+    for (String attendee : request.getAttendees()) {
+      WorkingHours hours = request.getWorkingHours(attendee);
+      if (hours != null) {
+        busy.add(IntervalStreams.offHours(hours, horizonStart, horizonEnd));
+      }
+    }
+    return findGaps(IntervalStreams.merge(busy), horizonStart, horizonEnd, duration);
+  }
+
+  /**
+   * Returns the times of the single events with any of the request's attendees that overlap the
+   * horizon, cut to the horizon. Busy times are rounded out to whole minutes.
+   */
+  private static IntervalStream getEventIntervals(Collection<CalendarEvent> events,
+      HorizonMeetingRequest request, long horizonStart, long horizonEnd) {
+    long[] starts = new long[events.size()];
+    long[] ends = new long[events.size()];
+    int size = 0;
+    for (CalendarEvent event : events) {
+      long start = Math.max(horizonStart, IntervalStreams.floorMinute(event.getWhen().start()));
+      long end = Math.min(horizonEnd, IntervalStreams.ceilMinute(event.getWhen().end()));
+      if (event.getRecurrence() != null || start >= end || !hasAnyAttendee(event, request)) {
+        continue;
+      }
+      starts[size] = start;
+      ends[size] = end;
+      size++;
+    }
+    return IntervalStreams.sorted(starts, ends, size);
+  }
+
+  private static boolean hasAnyAttendee(CalendarEvent event, HorizonMeetingRequest request) {
+    for (String attendee : event.getAttendees()) {
+      if (request.getAttendees().contains(attendee)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the gaps of at least {@code duration} minutes between the busy intervals, from
+   * {@code from} to {@code to}.
+   */
+  private static List<InstantRange> findGaps(
+      IntervalStream busy, long from, long to, long duration) {
+    List<InstantRange> gaps = new ArrayList<>();
+    long lastEnd = from;
+    while (lastEnd < to && busy.advance()) {
+      if (busy.start() > lastEnd) {
+        // Case: There is a gap, check if it can fit the requested meeting.
+        long gapEnd = Math.min(to, busy.start());
+        if (gapEnd - lastEnd >= duration) {
+          gaps.add(InstantRange.fromEpochMinutes(lastEnd, gapEnd));
+        }
+      }
+      lastEnd = Math.max(lastEnd, busy.end());
+    }
+    if (lastEnd < to && to - lastEnd >= duration) {
+      gaps.add(InstantRange.fromEpochMinutes(lastEnd, to));
+    }
+    return gaps;
+  }
+}
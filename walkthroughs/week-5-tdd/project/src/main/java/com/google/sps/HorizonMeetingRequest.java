@@ -0,0 +1,75 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * A request for a meeting at any time within a horizon of one or more days, such as the next week
+ * or quarter, rather than within a single day like {@link MeetingRequest}.
+ */
+public final class HorizonMeetingRequest {
+  // All the people that should be attending this new meeting. Use a set to avoid duplicates.
+  private final Collection<String> attendees = new HashSet<>();
+
+  // The hours each attendee can meet in. Attendees without an entry can meet at any time.
+  private final Map<String, WorkingHours> workingHours = new HashMap<>();
+
+  private final Duration duration;
+  private final InstantRange horizon;
+
+  public HorizonMeetingRequest(
+      Collection<String> attendees, Duration duration, InstantRange horizon) {
+    this.attendees.addAll(attendees);
+    this.duration = duration;
+    this.horizon = horizon;
+  }
+
+  /**
+   * Returns a read-only copy of the people who are required to attend this meeting.
+   */
+  public Collection<String> getAttendees() {
+    return Collections.unmodifiableCollection(attendees);
+  }
+
+  /**
+   * Limits the meeting to the working hours of {@code attendee}.
+   */
+  public void setWorkingHours(String attendee, WorkingHours hours) {
+    workingHours.put(attendee, hours);
+  }
+
+  /**
+   * Returns the working hours of {@code attendee}, or null if they can meet at any time.
+   */
+  public WorkingHours getWorkingHours(String attendee) {
+    return workingHours.get(attendee);
+  }
+
+  public Duration getDuration() {
+    return duration;
+  }
+
+  /**
+   * Returns the range of time the meeting has to fall in.
+   */
+  public InstantRange getHorizon() {
+    return horizon;
+  }
+}
@@ -0,0 +1,81 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * A span of time between two instants, which unlike {@link TimeRange} isn't limited to one day.
+ * The end is exclusive.
+ */
+public final class InstantRange {
+  private final Instant start;
+  private final Instant end;
+
+  private InstantRange(Instant start, Instant end) {
+    this.start = start;
+    this.end = end;
+  }
+
+  /** Creates a range from {@code start} to {@code end}, which must not come before the start. */
+  public static InstantRange fromStartEnd(Instant start, Instant end) {
+    if (start == null || end == null) {
+      throw new IllegalArgumentException("start and end cannot be null");
+    }
+    if (end.isBefore(start)) {
+      throw new IllegalArgumentException("end cannot come before start");
+    }
+    return new InstantRange(start, end);
+  }
+
+  public static InstantRange fromStartDuration(Instant start, Duration duration) {
+    return fromStartEnd(start, start.plus(duration));
+  }
+
+  /** Creates a range from minute {@code start} to minute {@code end} since the epoch. */
+  static InstantRange fromEpochMinutes(long start, long end) {
+    return new InstantRange(Instant.ofEpochSecond(start * 60), Instant.ofEpochSecond(end * 60));
+  }
+
+  public Instant start() {
+    return start;
+  }
+
+  public Instant end() {
+    return end;
+  }
+
+  public Duration duration() {
+    return Duration.between(start, end);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof InstantRange
+        && start.equals(((InstantRange) other).start)
+        && end.equals(((InstantRange) other).end);
+  }
+
+  @Override
+  public int hashCode() {
+    return start.hashCode() ^ end.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Range: [%s, %s)", start, end);
+  }
+}
@@ -0,0 +1,30 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps;
+
+/**
+ * Busy intervals in minutes since the epoch, ordered by start, read one at a time. The intervals
+ * may overlap. Streams can generate their intervals as they go, so that a long horizon doesn't
+ * need all of them in memory at once.
+ */
+interface IntervalStream {
+  /** Moves to the next interval. Returns false, and leaves the stream ended, if there is none. */
+  boolean advance();
+
+  /** Returns the start of the current interval. */
+  long start();
+
+  /** Returns the end of the current interval, exclusive. */
+  long end();
+}
@@ -0,0 +1,274 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/** Ways of making and combining {@link IntervalStream}s. */
+final class IntervalStreams {
+  private IntervalStreams() {
+    // Disallow instances.
+  }
+
+  /** Returns the minute since the epoch that contains {@code instant}. */
+  static long floorMinute(Instant instant) {
+    return Math.floorDiv(instant.getEpochSecond(), 60);
+  }
+
+  /** Returns the first minute since the epoch that starts at or after {@code instant}. */
+  static long ceilMinute(Instant instant) {
+    long minute = floorMinute(instant);
+    return instant.equals(Instant.ofEpochSecond(minute * 60)) ? minute : minute + 1;
+  }
+
+  /**
+   * Returns a stream of the intervals {@code [starts[i], ends[i])}, sorting them by start first.
+   * The starts must be less than 2^31 minutes, about 4,000 years, apart.
+   */
+  static IntervalStream sorted(long[] starts, long[] ends, int size) {
+    long base = Long.MAX_VALUE;
+    for (int i = 0; i < size; i++) {
+      base = Math.min(base, starts[i]);
+    }
+    // Sort (start - base, index) pairs packed into longs, which sorts by start without boxing.
+    long[] order = new long[size];
+    for (int i = 0; i < size; i++) {
+      long offset = starts[i] - base;
+      if (offset > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Intervals are too far apart: " + offset + " minutes");
+      }
+      order[i] = (offset << 32) | i;
+    }
+    Arrays.sort(order);
+    long[] sortedStarts = new long[size];
+    long[] sortedEnds = new long[size];
+    for (int i = 0; i < size; i++) {
+      int index = (int) order[i];
+      sortedStarts[i] = starts[index];
+      sortedEnds[i] = ends[index];
+    }
+    return new ArrayStream(sortedStarts, sortedEnds);
+  }
+
+  /**
+   * Returns the times from minute {@code from} to minute {@code to} that are outside of
+   * {@code hours}, generated a day at a time.
+   */
+  static IntervalStream offHours(WorkingHours hours, long from, long to) {
+    return new OffHoursStream(hours, from, to);
+  }
+
+  /**
+   * Returns the occurrences of the recurring {@code event} that overlap minutes {@code from} to
+   * {@code to}, generated one at a time as the stream is read.
+   */
+  static IntervalStream occurrences(CalendarEvent event, long from, long to) {
+    return new OccurrenceStream(event, from, to);
+  }
+
+  /** Returns the intervals of all of {@code streams} in one stream, still ordered by start. */
+  static IntervalStream merge(List<IntervalStream> streams) {
+    return new MergedStream(streams);
+  }
+
+  private static final class ArrayStream implements IntervalStream {
+    private final long[] starts;
+    private final long[] ends;
+    private int index = -1;
+
+    ArrayStream(long[] starts, long[] ends) {
+      this.starts = starts;
+      this.ends = ends;
+    }
+
+    @Override
+    public boolean advance() {
+      if (index < starts.length) {
+        index++;
+      }
+      return index < starts.length;
+    }
+
+    @Override
+    public long start() {
+      return starts[index];
+    }
+
+    @Override
+    public long end() {
+      return ends[index];
+    }
+  }
+
+  /** The gaps between the working hours of consecutive days. */
+  private static final class OffHoursStream implements IntervalStream {
+    private final WorkingHours hours;
+    private final long to;
+    // The next day whose working hours haven't been looked at yet.
+    private LocalDate date;
+    // The end of the last working hours, before which nothing is left to report.
+    private long previousEnd;
+    private long start;
+    private long end;
+
+    OffHoursStream(WorkingHours hours, long from, long to) {
+      this.hours = hours;
+      this.to = to;
+      // Start a day early, in case hours that run past midnight are still going at {@code from}.
+      this.date = Instant.ofEpochSecond(from * 60).atZone(hours.getZone()).toLocalDate()
+          .minusDays(1);
+      this.previousEnd = from;
+    }
+
+    @Override
+    public boolean advance() {
+      while (previousEnd < to) {
+        long windowStart = to;
+        long windowEnd = to;
+        // A week has every working day, so give up after that if there are none.
+        for (int i = 0; i < 7; i++, date = date.plusDays(1)) {
+          if (hours.worksOn(date)) {
+            windowStart = Math.min(to, hours.startMinute(date));
+            windowEnd = Math.max(windowStart, hours.endMinute(date));
+            date = date.plusDays(1);
+            break;
+          }
+        }
+        if (windowStart > previousEnd) {
+          start = previousEnd;
+          end = windowStart;
+          previousEnd = Math.max(previousEnd, windowEnd);
+          return true;
+        }
+        previousEnd = Math.max(previousEnd, windowEnd);
+      }
+      return false;
+    }
+
+    @Override
+    public long start() {
+      return start;
+    }
+
+    @Override
+    public long end() {
+      return end;
+    }
+  }
+
+  /** The occurrences of a recurring event, from the first date that could reach the horizon. */
+  private static final class OccurrenceStream implements IntervalStream {
+    private final Recurrence recurrence;
+    private final LocalDate first;
+    private final LocalTime time;
+    private final Duration duration;
+    private final long from;
+    private final long to;
+    // The date of the next occurrence, or null if there are no more.
+    private LocalDate date;
+    private long start;
+    private long end;
+
+    OccurrenceStream(CalendarEvent event, long from, long to) {
+      this.recurrence = event.getRecurrence();
+      ZonedDateTime firstStart = event.getWhen().start().atZone(recurrence.getZone());
+      this.first = firstStart.toLocalDate();
+      this.time = firstStart.toLocalTime();
+      this.duration = event.getWhen().duration();
+      this.from = from;
+      this.to = to;
+      // An occurrence that starts up to its duration before {@code from} can still overlap it. Go
+      // back a day more, for daylight saving changes.
+      LocalDate fromDate = Instant.ofEpochSecond(from * 60).minus(duration)
+          .minus(Duration.ofDays(1)).atZone(recurrence.getZone()).toLocalDate();
+      this.date = recurrence.nextDate(first, fromDate);
+    }
+
+    @Override
+    public boolean advance() {
+      while (date != null) {
+        Instant occurrence = ZonedDateTime.of(date, time, recurrence.getZone()).toInstant();
+        long occurrenceStart = floorMinute(occurrence);
+        if (occurrenceStart >= to) {
+          date = null;
+          return false;
+        }
+        date = recurrence.nextDate(first, date.plusDays(1));
+        long occurrenceEnd = ceilMinute(occurrence.plus(duration));
+        if (occurrenceEnd > from) {
+          start = occurrenceStart;
+          end = occurrenceEnd;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public long start() {
+      return start;
+    }
+
+    @Override
+    public long end() {
+      return end;
+    }
+  }
+
+  /** Merges sorted streams by always taking the stream with the earliest current interval. */
+  private static final class MergedStream implements IntervalStream {
+    private final PriorityQueue<IntervalStream> queue =
+        new PriorityQueue<>((a, b) -> Long.compare(a.start(), b.start()));
+    private final List<IntervalStream> streams;
+    private boolean started;
+    private IntervalStream current;
+
+    MergedStream(List<IntervalStream> streams) {
+      this.streams = streams;
+    }
+
+    @Override
+    public boolean advance() {
+      if (!started) {
+        started = true;
+        for (IntervalStream stream : streams) {
+          if (stream.advance()) {
+            queue.add(stream);
+          }
+        }
+      } else if (current != null && current.advance()) {
+        queue.add(current);
+      }
+      current = queue.poll();
+      return current != null;
+    }
+
+    @Override
+    public long start() {
+      return current.start();
+    }
+
+    @Override
+    public long end() {
+      return current.end();
+    }
+  }
+}
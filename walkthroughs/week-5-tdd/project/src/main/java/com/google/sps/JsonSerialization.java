@@ -0,0 +1,142 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Holds the one {@code Gson} instance shared by the servlets. {@code TimeRange} and
+ * {@code MeetingRequest} use the hand-written adapters below rather than reflection; they produce
+ * and accept the same JSON as the reflective ones, which script.js relies on.
+ */
+public final class JsonSerialization {
+  public static final Gson GSON =
+      new GsonBuilder()
+          .registerTypeAdapter(TimeRange.class, new TimeRangeAdapter().nullSafe())
+          .registerTypeAdapter(MeetingRequest.class, new MeetingRequestAdapter().nullSafe())
+          .create();
+
+  private JsonSerialization() {}
+
+  /** Converts a {@code TimeRange} to and from {"start": ..., "duration": ...}. */
+  static final class TimeRangeAdapter extends TypeAdapter<TimeRange> {
+    @Override
+    public void write(JsonWriter out, TimeRange range) throws IOException {
+      out.beginObject();
+      out.name("start").value(range.start());
+      out.name("duration").value(range.duration());
+      out.endObject();
+    }
+
+    @Override
+    public TimeRange read(JsonReader in) throws IOException {
+      int start = 0;
+      int duration = 0;
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "start":
+            start = in.nextInt();
+            break;
+          case "duration":
+            duration = in.nextInt();
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return TimeRange.fromStartDuration(start, duration);
+    }
+  }
+
+  /**
+   * Converts a {@code MeetingRequest} to and from
+   * {"attendees": [...], "optional_attendees": [...], "duration": ...}, the shape of the
+   * MeetingRequest class in script.js.
+   */
+  static final class MeetingRequestAdapter extends TypeAdapter<MeetingRequest> {
+    @Override
+    public void write(JsonWriter out, MeetingRequest request) throws IOException {
+      out.beginObject();
+      out.name("attendees");
+      writeStrings(out, request.getAttendees());
+      out.name("optional_attendees");
+      writeStrings(out, request.getOptionalAttendees());
+      out.name("duration").value(request.getDuration());
+      out.endObject();
+    }
+
+    @Override
+    public MeetingRequest read(JsonReader in) throws IOException {
+      List<String> attendees = new ArrayList<>();
+      List<String> optionalAttendees = new ArrayList<>();
+      long duration = 0;
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "attendees":
+            readStrings(in, attendees);
+            break;
+          case "optional_attendees":
+            readStrings(in, optionalAttendees);
+            break;
+          case "duration":
+            // script.js sends the duration as the string value of an input, which nextLong accepts.
+            duration = in.nextLong();
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+
+      MeetingRequest request = new MeetingRequest(attendees, duration);
+      for (String attendee : optionalAttendees) {
+        request.addOptionalAttendee(attendee);
+      }
+      return request;
+    }
+
+    private static void writeStrings(JsonWriter out, Collection<String> strings) throws IOException {
+      out.beginArray();
+      for (String string : strings) {
+        out.value(string);
+      }
+      out.endArray();
+    }
+
+    private static void readStrings(JsonReader in, Collection<String> strings) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return;
+      }
+      in.beginArray();
+      while (in.hasNext()) {
+        strings.add(in.nextString());
+      }
+      in.endArray();
+    }
+  }
+}
@@ -0,0 +1,159 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * How a {@link CalendarEvent} repeats: every {@code interval} days, or on some days of every
+ * {@code interval} weeks, at the same local time in {@code zone} as the event's first occurrence,
+ * until an optional last date and except on some dates. Recurrences are read-only; the methods
+ * that change one return a new recurrence.
+ */
+public final class Recurrence {
+  /** The unit that a recurrence repeats in. */
+  public enum Frequency {
+    DAILY,
+    WEEKLY
+  }
+
+  private final Frequency frequency;
+  private final int interval;
+  private final Set<DayOfWeek> days;
+  private final ZoneId zone;
+  private final LocalDate until;
+  private final Set<LocalDate> exceptions;
+
+  private Recurrence(Frequency frequency, int interval, Set<DayOfWeek> days, ZoneId zone,
+      LocalDate until, Set<LocalDate> exceptions) {
+    if (interval < 1) {
+      throw new IllegalArgumentException("interval must be at least 1");
+    }
+    if (zone == null) {
+      throw new IllegalArgumentException("zone cannot be null");
+    }
+    this.frequency = frequency;
+    this.interval = interval;
+    this.days = days;
+    this.zone = zone;
+    this.until = until;
+    this.exceptions = exceptions;
+  }
+
+  /** Returns a recurrence on every day, at the first occurrence's local time in {@code zone}. */
+  public static Recurrence daily(ZoneId zone) {
+    return new Recurrence(Frequency.DAILY, 1, EnumSet.noneOf(DayOfWeek.class), zone, null,
+        Collections.emptySet());
+  }
+
+  /**
+   * Returns a recurrence on {@code days} of every week, or on the first occurrence's day of the
+   * week if {@code days} is empty.
+   */
+  public static Recurrence weekly(ZoneId zone, Collection<DayOfWeek> days) {
+    Set<DayOfWeek> daySet =
+        days.isEmpty() ? EnumSet.noneOf(DayOfWeek.class) : EnumSet.copyOf(days);
+    return new Recurrence(Frequency.WEEKLY, 1, daySet, zone, null, Collections.emptySet());
+  }
+
+  /** Returns this recurrence repeating only every {@code interval} days or weeks. */
+  public Recurrence every(int interval) {
+    return new Recurrence(frequency, interval, days, zone, until, exceptions);
+  }
+
+  /** Returns this recurrence ending with the occurrence on {@code lastDate}, if there is one. */
+  public Recurrence until(LocalDate lastDate) {
+    return new Recurrence(frequency, interval, days, zone, lastDate, exceptions);
+  }
+
+  /** Returns this recurrence without the occurrence on {@code date}, local to the zone. */
+  public Recurrence except(LocalDate date) {
+    Set<LocalDate> newExceptions = new HashSet<>(exceptions);
+    newExceptions.add(date);
+    return new Recurrence(frequency, interval, days, zone, until, newExceptions);
+  }
+
+  public Frequency getFrequency() {
+    return frequency;
+  }
+
+  public int getInterval() {
+    return interval;
+  }
+
+  public Set<DayOfWeek> getDays() {
+    return Collections.unmodifiableSet(days);
+  }
+
+  public ZoneId getZone() {
+    return zone;
+  }
+
+  /** Returns the last date that can have an occurrence, or null if the recurrence doesn't end. */
+  public LocalDate getUntil() {
+    return until;
+  }
+
+  public Set<LocalDate> getExceptions() {
+    return Collections.unmodifiableSet(exceptions);
+  }
+
+  /**
+   * Returns the first date on or after {@code date} with an occurrence, for a recurrence whose
+   * first occurrence is on {@code first}, or null if there are no more occurrences.
+   */
+  LocalDate nextDate(LocalDate first, LocalDate date) {
+    if (date.isBefore(first)) {
+      date = first;
+    }
+    LocalDate firstWeek = first.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    while (until == null || !date.isAfter(until)) {
+      if (frequency == Frequency.DAILY) {
+        long offset = ChronoUnit.DAYS.between(first, date) % interval;
+        if (offset != 0) {
+          date = date.plusDays(interval - offset);
+          continue;
+        }
+      } else {
+        LocalDate week = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        long offset = ChronoUnit.WEEKS.between(firstWeek, week) % interval;
+        if (offset != 0) {
+          date = week.plusWeeks(interval - offset);
+          continue;
+        }
+        boolean onDay = days.isEmpty()
+            ? date.getDayOfWeek() == first.getDayOfWeek()
+            : days.contains(date.getDayOfWeek());
+        if (!onDay) {
+          date = date.plusDays(1);
+          continue;
+        }
+      }
+      if (!exceptions.contains(date)) {
+        return date;
+      }
+      date = date.plusDays(1);
+    }
+    return null;
+  }
+}
@@ -0,0 +1,87 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The hours someone can meet, in their own time zone: from {@code start} to {@code end} local time
+ * on each of {@code days}. If {@code end} isn't after {@code start}, the hours run past midnight
+ * into the next day.
+ */
+public final class WorkingHours {
+  private final ZoneId zone;
+  private final LocalTime start;
+  private final LocalTime end;
+  private final Set<DayOfWeek> days;
+
+  public WorkingHours(ZoneId zone, LocalTime start, LocalTime end, Collection<DayOfWeek> days) {
+    if (zone == null || start == null || end == null || days == null) {
+      throw new IllegalArgumentException("zone, start, end and days cannot be null");
+    }
+    this.zone = zone;
+    this.start = start;
+    this.end = end;
+    this.days = days.isEmpty() ? EnumSet.noneOf(DayOfWeek.class) : EnumSet.copyOf(days);
+  }
+
+  /** Returns working hours from {@code start} to {@code end}, Monday to Friday. */
+  public static WorkingHours weekdays(ZoneId zone, LocalTime start, LocalTime end) {
+    return new WorkingHours(zone, start, end, EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY));
+  }
+
+  public ZoneId getZone() {
+    return zone;
+  }
+
+  public LocalTime getStart() {
+    return start;
+  }
+
+  public LocalTime getEnd() {
+    return end;
+  }
+
+  public Set<DayOfWeek> getDays() {
+    return Collections.unmodifiableSet(days);
+  }
+
+  /** Returns whether there are working hours on {@code date}, starting that day. */
+  boolean worksOn(LocalDate date) {
+    return days.contains(date.getDayOfWeek());
+  }
+
+  /**
+   * Returns the minute since the epoch when the working hours that start on {@code date} begin.
+   * Times skipped by a daylight saving change move forward, as in {@link ZonedDateTime#of}.
+   */
+  long startMinute(LocalDate date) {
+    return Math.floorDiv(ZonedDateTime.of(date, start, zone).toEpochSecond() + 59, 60);
+  }
+
+  /** Returns the minute since the epoch when the working hours that start on {@code date} end. */
+  long endMinute(LocalDate date) {
+    LocalDate endDate = end.isAfter(start) ? date : date.plusDays(1);
+    return Math.floorDiv(ZonedDateTime.of(endDate, end, zone).toEpochSecond(), 60);
+  }
+}
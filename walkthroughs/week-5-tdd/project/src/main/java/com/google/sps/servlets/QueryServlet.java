@@ -14,8 +14,10 @@
 
 package com.google.sps.servlets;
 
+import com.google.sps.EventIndex;
 import com.google.sps.Events;
 import com.google.sps.FindMeetingQuery;
+import com.google.sps.JsonSerialization;
 import com.google.sps.MeetingRequest;
 import com.google.sps.TimeRange;
 import com.google.gson.Gson;
@@ -29,9 +31,12 @@ import javax.servlet.http.HttpServletResponse;
 
 @WebServlet("/query")
 public class QueryServlet extends HttpServlet {
+  // The events never change, so their busy times are indexed by attendee once for every query.
+  private static final EventIndex eventIndex = new EventIndex(Arrays.asList(Events.events));
+
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Gson gson = new Gson();
+    Gson gson = JsonSerialization.GSON;
 
     // Convert the JSON to an instance of MeetingRequest.
     MeetingRequest meetingRequest = gson.fromJson(request.getReader(), MeetingRequest.class);
@@ -39,7 +44,7 @@ public class QueryServlet extends HttpServlet {
     // Find the possible meeting times.
     FindMeetingQuery findMeetingQuery = new FindMeetingQuery();
     Collection<TimeRange> answer =
-        findMeetingQuery.query(Arrays.asList(Events.events), meetingRequest);
+        findMeetingQuery.query(eventIndex, meetingRequest);
 
     // Convert the times to JSON
     String jsonResponse = gson.toJson(answer);
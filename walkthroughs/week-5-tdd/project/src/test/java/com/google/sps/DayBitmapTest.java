@@ -0,0 +1,117 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class DayBitmapTest {
+  private static final int TIME_0830AM = TimeRange.getTimeInMinutes(8, 30);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+
+  private static final int DURATION_30_MINUTES = 30;
+
+  @Test
+  public void emptyDayIsWholeDay() {
+    DayBitmap bitmap = new DayBitmap();
+
+    List<TimeRange> actual = bitmap.findFreeRanges(DURATION_30_MINUTES);
+    List<TimeRange> expected = Arrays.asList(TimeRange.WHOLE_DAY);
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void rangeAcrossWords() {
+    // 8:30 to 9:00 covers minutes 510 to 539, which span the 8th and 9th words.
+    DayBitmap bitmap = new DayBitmap();
+    bitmap.markBusy(TimeRange.fromStartEnd(TIME_0830AM, TIME_0900AM, false));
+
+    Assert.assertFalse(bitmap.isBusy(TIME_0830AM - 1));
+    Assert.assertTrue(bitmap.isBusy(TIME_0830AM));
+    Assert.assertTrue(bitmap.isBusy(TIME_0900AM - 1));
+    Assert.assertFalse(bitmap.isBusy(TIME_0900AM));
+    Assert.assertEquals(TIME_0830AM, bitmap.nextBusy(0));
+    Assert.assertEquals(TIME_0900AM, bitmap.nextFree(TIME_0830AM));
+    Assert.assertTrue(bitmap.isFree(0, TIME_0830AM));
+    Assert.assertFalse(bitmap.isFree(0, TIME_0830AM + 1));
+  }
+
+  @Test
+  public void freeRangesMatchEndOfDayRule() {
+    // A free run until the end of the day is measured up to END_OF_DAY, like the list-based search.
+    DayBitmap bitmap = new DayBitmap();
+    bitmap.markBusy(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0830AM, false));
+    bitmap.markBusy(TimeRange.fromStartEnd(TimeRange.END_OF_DAY - 30, TimeRange.END_OF_DAY, true));
+
+    List<TimeRange> actual = bitmap.findFreeRanges(DURATION_30_MINUTES);
+    List<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TIME_0830AM, TimeRange.END_OF_DAY - 30, false));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void busyEndsAreTheFirstFreeMinutes() {
+    DayBitmap bitmap = new DayBitmap();
+    bitmap.markBusy(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0830AM, false));
+    bitmap.markBusy(TimeRange.fromStartEnd(TIME_0900AM, TimeRange.END_OF_DAY, true));
+
+    DayBitmap ends = new DayBitmap();
+    bitmap.markBusyEnds(ends);
+
+    Assert.assertEquals(TIME_0830AM, ends.nextBusy(0));
+    Assert.assertEquals(DayBitmap.MINUTES_PER_DAY, ends.nextBusy(TIME_0830AM + 1));
+  }
+
+  @Test
+  public void bitmapEngineMatchesIntervalEngine() {
+    Random random = new Random(2020);
+    for (int trial = 0; trial < 200; trial++) {
+      List<String> people = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        people.add("Person " + i);
+      }
+      List<Event> events = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        int start = random.nextInt(DayBitmap.MINUTES_PER_DAY - 1);
+        int duration = 1 + random.nextInt(Math.min(180, DayBitmap.MINUTES_PER_DAY - start));
+        events.add(new Event("Event " + i, TimeRange.fromStartDuration(start, duration),
+            Arrays.asList(people.get(random.nextInt(people.size())))));
+      }
+      int mandatoryCount = random.nextInt(3);
+      MeetingRequest request =
+          new MeetingRequest(people.subList(0, mandatoryCount), 15 + random.nextInt(120));
+      for (String person : people.subList(mandatoryCount, people.size())) {
+        request.addOptionalAttendee(person);
+      }
+
+      Collection<TimeRange> expected =
+          new FindMeetingQuery(FindMeetingQuery.Engine.INTERVALS).query(events, request);
+      Collection<TimeRange> actual =
+          new FindMeetingQuery(FindMeetingQuery.Engine.BITMAP).query(events, request);
+
+      Assert.assertEquals(expected, actual);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class EventIndexTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0830AM = TimeRange.getTimeInMinutes(8, 30);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_0930AM = TimeRange.getTimeInMinutes(9, 30);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+
+  private static final int DURATION_30_MINUTES = 30;
+
+  @Test
+  public void mergesOverlappingAndTouchingEvents() {
+    // Events  : |--A--|--A--|     |--A--|
+    //              |---A---|
+    EventIndex index = new EventIndex(Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0930AM, TIME_1000AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0800AM, TIME_0830AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 3", TimeRange.fromStartEnd(TIME_0830AM, TIME_0900AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 4", TimeRange.fromStartEnd(TIME_0800AM + 10, TIME_0900AM - 10, false),
+            Arrays.asList(PERSON_A, PERSON_B))));
+
+    Assert.assertArrayEquals(new int[] {TIME_0800AM, TIME_0900AM, TIME_0930AM, TIME_1000AM},
+        index.getBusyIntervals(PERSON_A));
+    Assert.assertArrayEquals(new int[] {TIME_0800AM + 10, TIME_0900AM - 10},
+        index.getBusyIntervals(PERSON_B));
+    Assert.assertArrayEquals(new int[0], index.getBusyIntervals("Nobody"));
+  }
+
+  @Test
+  public void addAndRemoveEvents() {
+    Event first = new Event("Event 1", TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+        Arrays.asList(PERSON_A));
+    Event second = new Event("Event 2", TimeRange.fromStartEnd(TIME_0830AM, TIME_0930AM, false),
+        Arrays.asList(PERSON_A, PERSON_B));
+    EventIndex index = new EventIndex();
+
+    index.add(first);
+    Assert.assertArrayEquals(
+        new int[] {TIME_0800AM, TIME_0900AM}, index.getBusyIntervals(PERSON_A));
+
+    index.add(second);
+    Assert.assertArrayEquals(
+        new int[] {TIME_0800AM, TIME_0930AM}, index.getBusyIntervals(PERSON_A));
+
+    Assert.assertTrue(index.remove(first));
+    Assert.assertArrayEquals(
+        new int[] {TIME_0830AM, TIME_0930AM}, index.getBusyIntervals(PERSON_A));
+    Assert.assertArrayEquals(
+        new int[] {TIME_0830AM, TIME_0930AM}, index.getBusyIntervals(PERSON_B));
+
+    Assert.assertFalse(index.remove(first));
+    Assert.assertTrue(index.remove(second));
+    Assert.assertArrayEquals(new int[0], index.getBusyIntervals(PERSON_A));
+  }
+
+  @Test
+  public void removesOneOfTwoEventsAtTheSameTime() {
+    TimeRange when = TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false);
+    Event first = new Event("Event 1", when, Arrays.asList(PERSON_A));
+    Event second = new Event("Event 2", when, Arrays.asList(PERSON_A));
+    EventIndex index = new EventIndex(Arrays.asList(first, second));
+
+    index.remove(first);
+
+    Assert.assertArrayEquals(
+        new int[] {TIME_0800AM, TIME_0900AM}, index.getBusyIntervals(PERSON_A));
+  }
+
+  @Test
+  public void queryFollowsIndexChanges() {
+    Event event = new Event("Event 1",
+        TimeRange.fromStartDuration(TIME_0830AM, DURATION_30_MINUTES), Arrays.asList(PERSON_A));
+    EventIndex index = new EventIndex();
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    FindMeetingQuery query = new FindMeetingQuery();
+
+    index.add(event);
+    Collection<TimeRange> actual = query.query(index, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0830AM, false),
+            TimeRange.fromStartEnd(TIME_0900AM, TimeRange.END_OF_DAY, true));
+    Assert.assertEquals(expected, actual);
+
+    index.remove(event);
+    actual = query.query(index, request);
+    expected = Arrays.asList(TimeRange.WHOLE_DAY);
+    Assert.assertEquals(expected, actual);
+  }
+}
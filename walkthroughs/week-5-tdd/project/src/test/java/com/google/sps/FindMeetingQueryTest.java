@@ -442,4 +442,93 @@ public final class FindMeetingQueryTest {
 
     Assert.assertEquals(expected, actual);
   }
+
+  @Test
+  public void optionalAttendeeWithoutEvents() {
+    // One mandatory attendee A and an optional attendee B with no events at all, who can therefore
+    // attend any of A's options.
+    //
+    // Events  :       |--A--|
+    // Day     : |---------------------|
+    // Options : |--1--|     |----2----|
+
+    Collection<Event> events = Arrays.asList(new Event("Event 1",
+        TimeRange.fromStartDuration(TIME_0830AM, DURATION_30_MINUTES), Arrays.asList(PERSON_A)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_B);
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0830AM, false),
+            TimeRange.fromStartEnd(TIME_0900AM, TimeRange.END_OF_DAY, true));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void optionalAttendeesSplitAcrossMeetings() {
+    // One mandatory attendee A and optional attendees B and C who are each only free for one of A's
+    // gaps. Only one of them can attend, and the earliest option for one of them is chosen.
+    //
+    // Events  : |-A-|  |--A--|  |---A---|
+    //               |B|
+    //                        |C|
+    // Day     : |---------------------|
+    // Options :     |--|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0830AM, TIME_0900AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 3", TimeRange.fromStartEnd(TIME_0930AM, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 4", TimeRange.fromStartEnd(TIME_0800AM, TIME_0830AM, false),
+            Arrays.asList(PERSON_B)),
+        new Event("Event 5", TimeRange.fromStartEnd(TIME_0900AM, TIME_0930AM, false),
+            Arrays.asList(PERSON_C)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_B);
+    request.addOptionalAttendee(PERSON_C);
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test(timeout = 1000)
+  public void manyOptionalAttendees() {
+    // One mandatory attendee A who is free from 9:00 to 10:00 and from 14:00 to 15:00, and 200
+    // optional attendees: 120 of them are busy from 9:00 to 10:00 and the other 80 from 14:00 to
+    // 15:00, so the afternoon suits more of them. Trying every group of optional attendees would
+    // never finish.
+    int time1400 = TimeRange.getTimeInMinutes(14, 0);
+    int time1500 = TimeRange.getTimeInMinutes(15, 0);
+    List<Event> events = new ArrayList<>();
+    events.add(new Event("Morning", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0900AM,
+        false), Arrays.asList(PERSON_A)));
+    events.add(new Event("Midday", TimeRange.fromStartEnd(TIME_1000AM, time1400, false),
+        Arrays.asList(PERSON_A)));
+    events.add(new Event("Evening", TimeRange.fromStartEnd(time1500, TimeRange.END_OF_DAY, true),
+        Arrays.asList(PERSON_A)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_60_MINUTES);
+    for (int i = 0; i < 200; i++) {
+      String person = "Optional " + i;
+      int start = i < 120 ? TIME_0900AM : time1400;
+      events.add(new Event("Busy " + i, TimeRange.fromStartDuration(start, DURATION_60_MINUTES),
+          Arrays.asList(person)));
+      request.addOptionalAttendee(person);
+    }
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartDuration(time1400, DURATION_60_MINUTES));
+
+    Assert.assertEquals(expected, actual);
+  }
 }
@@ -0,0 +1,250 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class HorizonMeetingQueryTest {
+  private static final Collection<CalendarEvent> NO_EVENTS = Collections.emptySet();
+
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+  private static final ZoneId LONDON = ZoneId.of("Europe/London");
+
+  private static final LocalTime NINE_AM = LocalTime.of(9, 0);
+  private static final LocalTime FIVE_PM = LocalTime.of(17, 0);
+
+  private static final Duration DURATION_1_HOUR = Duration.ofHours(1);
+
+  private HorizonMeetingQuery query;
+
+  @Before
+  public void setUp() {
+    query = new HorizonMeetingQuery();
+  }
+
+  @Test
+  public void noEventsOrWorkingHoursIsWholeHorizon() {
+    InstantRange horizon = InstantRange.fromStartEnd(
+        Instant.parse("2020-01-06T00:00:00Z"), Instant.parse("2020-01-09T00:00:00Z"));
+    HorizonMeetingRequest request =
+        new HorizonMeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR, horizon);
+
+    List<InstantRange> actual = query.query(NO_EVENTS, request);
+    List<InstantRange> expected = Arrays.asList(horizon);
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void eventsSpanningMidnight() {
+    // A's events run over midnight, leaving a gap that spans midnight too.
+    //
+    // Events  : |--A--|          |---A---|
+    // Days    : |--Mon--|--Tue--|--Wed--|
+    // Options :       |----------|
+    InstantRange horizon = InstantRange.fromStartEnd(
+        Instant.parse("2020-01-06T00:00:00Z"), Instant.parse("2020-01-09T00:00:00Z"));
+    Collection<CalendarEvent> events = Arrays.asList(
+        new CalendarEvent("Event 1", InstantRange.fromStartEnd(
+            Instant.parse("2020-01-05T20:00:00Z"), Instant.parse("2020-01-06T20:00:00Z")),
+            Arrays.asList(PERSON_A)),
+        new CalendarEvent("Event 2", InstantRange.fromStartEnd(
+            Instant.parse("2020-01-07T22:00:00Z"), Instant.parse("2020-01-10T00:00:00Z")),
+            Arrays.asList(PERSON_A)),
+        new CalendarEvent("Event 3", InstantRange.fromStartEnd(
+            Instant.parse("2020-01-06T21:00:00Z"), Instant.parse("2020-01-07T01:00:00Z")),
+            Arrays.asList(PERSON_B)));
+    HorizonMeetingRequest request =
+        new HorizonMeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR, horizon);
+
+    List<InstantRange> actual = query.query(events, request);
+    List<InstantRange> expected = Arrays.asList(InstantRange.fromStartEnd(
+        Instant.parse("2020-01-06T20:00:00Z"), Instant.parse("2020-01-07T22:00:00Z")));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void workingHoursInTwoTimeZones() {
+    // A works 9 to 5 in New York and B works 9 to 5 in London, on weekdays. In January, their
+    // hours overlap from 14:00 to 17:00 UTC. A Wednesday event of B's splits that day's overlap in
+    // two, and there are no options on the weekend.
+    InstantRange horizon = InstantRange.fromStartEnd(
+        Instant.parse("2020-01-06T00:00:00Z"), Instant.parse("2020-01-13T00:00:00Z"));
+    Collection<CalendarEvent> events = Arrays.asList(
+        new CalendarEvent("Event 1", InstantRange.fromStartEnd(
+            Instant.parse("2020-01-08T15:00:00Z"), Instant.parse("2020-01-08T15:30:00Z")),
+            Arrays.asList(PERSON_B)));
+    HorizonMeetingRequest request = new HorizonMeetingRequest(
+        Arrays.asList(PERSON_A, PERSON_B), DURATION_1_HOUR, horizon);
+    request.setWorkingHours(PERSON_A, WorkingHours.weekdays(NEW_YORK, NINE_AM, FIVE_PM));
+    request.setWorkingHours(PERSON_B, WorkingHours.weekdays(LONDON, NINE_AM, FIVE_PM));
+
+    List<InstantRange> actual = query.query(events, request);
+    List<InstantRange> expected = Arrays.asList(
+        range("2020-01-06T14:00:00Z", "2020-01-06T17:00:00Z"),
+        range("2020-01-07T14:00:00Z", "2020-01-07T17:00:00Z"),
+        range("2020-01-08T14:00:00Z", "2020-01-08T15:00:00Z"),
+        range("2020-01-08T15:30:00Z", "2020-01-08T17:00:00Z"),
+        range("2020-01-09T14:00:00Z", "2020-01-09T17:00:00Z"),
+        range("2020-01-10T14:00:00Z", "2020-01-10T17:00:00Z"));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void workingHoursFollowDaylightSavingTime() {
+    // New York moves its clocks forward on March 8, 2020, so 9 AM is 14:00 UTC on the Friday before
+    // and 13:00 UTC on the Monday after.
+    InstantRange horizon = InstantRange.fromStartEnd(
+        Instant.parse("2020-03-06T00:00:00Z"), Instant.parse("2020-03-10T00:00:00Z"));
+    HorizonMeetingRequest request =
+        new HorizonMeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR, horizon);
+    request.setWorkingHours(PERSON_A, WorkingHours.weekdays(NEW_YORK, NINE_AM, FIVE_PM));
+
+    List<InstantRange> actual = query.query(NO_EVENTS, request);
+    List<InstantRange> expected = Arrays.asList(
+        range("2020-03-06T14:00:00Z", "2020-03-06T22:00:00Z"),
+        range("2020-03-09T13:00:00Z", "2020-03-09T21:00:00Z"));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void overnightWorkingHours() {
+    // A works from 10 PM to 6 AM UTC every day, including at the start of the horizon.
+    InstantRange horizon = InstantRange.fromStartEnd(
+        Instant.parse("2020-01-06T00:00:00Z"), Instant.parse("2020-01-07T12:00:00Z"));
+    HorizonMeetingRequest request =
+        new HorizonMeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR, horizon);
+    request.setWorkingHours(PERSON_A, new WorkingHours(ZoneId.of("UTC"), LocalTime.of(22, 0),
+        LocalTime.of(6, 0), Arrays.asList(DayOfWeek.values())));
+
+    List<InstantRange> actual = query.query(NO_EVENTS, request);
+    List<InstantRange> expected = Arrays.asList(
+        range("2020-01-06T00:00:00Z", "2020-01-06T06:00:00Z"),
+        range("2020-01-06T22:00:00Z", "2020-01-07T06:00:00Z"));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test(timeout = 2000)
+  public void quarterWithManyEvents() {
+    // 10,000 half-hour events of 50 people over 90 days still leave A and B a free hour.
+    Instant start = Instant.parse("2020-01-06T00:00:00Z");
+    InstantRange horizon = InstantRange.fromStartDuration(start, Duration.ofDays(90));
+    Random random = new Random(2020);
+    List<CalendarEvent> events = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      Instant eventStart = start.plus(Duration.ofMinutes(random.nextInt(90 * 24 * 60)));
+      events.add(new CalendarEvent("Event " + i,
+          InstantRange.fromStartDuration(eventStart, Duration.ofMinutes(30)),
+          Arrays.asList("Person " + random.nextInt(50))));
+    }
+    HorizonMeetingRequest request = new HorizonMeetingRequest(
+        Arrays.asList("Person 0", "Person 1"), DURATION_1_HOUR, horizon);
+    request.setWorkingHours("Person 0", WorkingHours.weekdays(NEW_YORK, NINE_AM, FIVE_PM));
+    request.setWorkingHours("Person 1", WorkingHours.weekdays(LONDON, NINE_AM, FIVE_PM));
+
+    List<InstantRange> actual = query.query(events, request);
+
+    Assert.assertFalse(actual.isEmpty());
+    for (InstantRange range : actual) {
+      Assert.assertTrue(range.duration().compareTo(DURATION_1_HOUR) >= 0);
+      for (CalendarEvent event : events) {
+        if (event.getAttendees().contains("Person 0")
+            || event.getAttendees().contains("Person 1")) {
+          Assert.assertFalse(event.getWhen().start().isBefore(range.end())
+              && range.start().isBefore(event.getWhen().end()));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void recurringEventsWithException() {
+    // A has a daily stand-up from 10:00 to 10:30 New York time, except on Wednesday, and a weekly
+    // Tuesday review from 13:00 to 16:00. Both started long before the horizon.
+    InstantRange horizon = InstantRange.fromStartEnd(
+        Instant.parse("2020-01-06T00:00:00Z"), Instant.parse("2020-01-09T00:00:00Z"));
+    Collection<CalendarEvent> events = Arrays.asList(
+        new CalendarEvent("Stand-up", range("2019-01-07T15:00:00Z", "2019-01-07T15:30:00Z"),
+            Arrays.asList(PERSON_A),
+            Recurrence.daily(NEW_YORK).except(LocalDate.of(2020, 1, 8))),
+        new CalendarEvent("Review", range("2019-01-08T18:00:00Z", "2019-01-08T21:00:00Z"),
+            Arrays.asList(PERSON_A, PERSON_B),
+            Recurrence.weekly(NEW_YORK, Arrays.asList(DayOfWeek.TUESDAY))));
+    HorizonMeetingRequest request =
+        new HorizonMeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR, horizon);
+    request.setWorkingHours(PERSON_A, WorkingHours.weekdays(NEW_YORK, NINE_AM, FIVE_PM));
+
+    List<InstantRange> actual = query.query(events, request);
+    List<InstantRange> expected = Arrays.asList(
+        range("2020-01-06T14:00:00Z", "2020-01-06T15:00:00Z"),
+        range("2020-01-06T15:30:00Z", "2020-01-06T22:00:00Z"),
+        range("2020-01-07T14:00:00Z", "2020-01-07T15:00:00Z"),
+        range("2020-01-07T15:30:00Z", "2020-01-07T18:00:00Z"),
+        range("2020-01-07T21:00:00Z", "2020-01-07T22:00:00Z"),
+        range("2020-01-08T14:00:00Z", "2020-01-08T22:00:00Z"));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test(timeout = 2000)
+  public void recurringEventsOverLongHorizon() {
+    // 500 daily rules, each an hour long, over a year. Materializing them would take 182,500
+    // events, while the streams only keep one occurrence per rule.
+    Instant start = Instant.parse("2020-01-01T00:00:00Z");
+    InstantRange horizon = InstantRange.fromStartDuration(start, Duration.ofDays(365));
+    List<CalendarEvent> events = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      // Rules start at 00:00 to 21:00 UTC, leaving 22:00 to 24:00 free every day.
+      Instant first = start.plus(Duration.ofMinutes(i % 22 * 60));
+      events.add(new CalendarEvent("Rule " + i,
+          InstantRange.fromStartDuration(first, DURATION_1_HOUR), Arrays.asList(PERSON_A),
+          Recurrence.daily(ZoneId.of("UTC"))));
+    }
+    HorizonMeetingRequest request =
+        new HorizonMeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR, horizon);
+
+    List<InstantRange> actual = query.query(events, request);
+
+    Assert.assertEquals(365, actual.size());
+    Assert.assertEquals(range("2020-01-01T22:00:00Z", "2020-01-02T00:00:00Z"), actual.get(0));
+  }
+
+  private static InstantRange range(String start, String end) {
+    return InstantRange.fromStartEnd(Instant.parse(start), Instant.parse(end));
+  }
+}
@@ -0,0 +1,80 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.Gson;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Checks that the hand-written adapters match the JSON that script.js sends and expects. */
+@RunWith(JUnit4.class)
+public final class JsonSerializationTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  @Test
+  public void timeRangeMatchesReflectiveJson() {
+    TimeRange range = TimeRange.fromStartDuration(TimeRange.getTimeInMinutes(8, 30), 45);
+
+    String expected = new Gson().toJson(range);
+    String actual = JsonSerialization.GSON.toJson(range);
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void timeRangeRoundTrips() {
+    TimeRange range = TimeRange.fromStartDuration(TimeRange.getTimeInMinutes(8, 30), 45);
+
+    TimeRange actual =
+        JsonSerialization.GSON.fromJson(JsonSerialization.GSON.toJson(range), TimeRange.class);
+
+    Assert.assertEquals(range, actual);
+  }
+
+  @Test
+  public void readsMeetingRequestFromScript() {
+    // The duration comes from a form input, so script.js sends it as a string.
+    String json =
+        "{\"duration\":\"30\",\"attendees\":[\"Person A\"],\"optional_attendees\":[\"Person B\",\"\"]}";
+
+    MeetingRequest request = JsonSerialization.GSON.fromJson(json, MeetingRequest.class);
+
+    Assert.assertEquals(30, request.getDuration());
+    Assert.assertEquals(Arrays.asList(PERSON_A), Arrays.asList(request.getAttendees().toArray()));
+    Assert.assertTrue(request.getOptionalAttendees().contains(PERSON_B));
+    Assert.assertTrue(request.getOptionalAttendees().contains(""));
+  }
+
+  @Test
+  public void eventsUseTimeRangeAdapter() {
+    Event event = new Event("Event 1", TimeRange.fromStartDuration(60, 30), Arrays.asList(PERSON_A));
+
+    String actual = JsonSerialization.GSON.toJson(event);
+
+    Assert.assertTrue(actual.contains("\"when\":{\"start\":60,\"duration\":30}"));
+  }
+
+  @Test
+  public void nullsAreWrittenAndReadAsJsonNull() {
+    Assert.assertEquals("null", JsonSerialization.GSON.toJson(null, TimeRange.class));
+    Assert.assertEquals("null", JsonSerialization.GSON.toJson(null, MeetingRequest.class));
+    Assert.assertNull(JsonSerialization.GSON.fromJson("null", TimeRange.class));
+    Assert.assertNull(JsonSerialization.GSON.fromJson("null", MeetingRequest.class));
+  }
+}
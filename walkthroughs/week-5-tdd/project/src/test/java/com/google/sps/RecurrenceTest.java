@@ -0,0 +1,97 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class RecurrenceTest {
+  private static final ZoneId UTC = ZoneId.of("UTC");
+
+  // A Monday.
+  private static final LocalDate FIRST = LocalDate.of(2020, 1, 6);
+
+  @Test
+  public void everyOtherDay() {
+    Recurrence recurrence = Recurrence.daily(UTC).every(2);
+
+    List<LocalDate> actual = getDates(recurrence, FIRST, FIRST.plusDays(1), 3);
+    List<LocalDate> expected = Arrays.asList(
+        LocalDate.of(2020, 1, 8), LocalDate.of(2020, 1, 10), LocalDate.of(2020, 1, 12));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void weekdaysOfEveryOtherWeek() {
+    Recurrence recurrence =
+        Recurrence.weekly(UTC, Arrays.asList(DayOfWeek.MONDAY, DayOfWeek.FRIDAY)).every(2);
+
+    List<LocalDate> actual = getDates(recurrence, FIRST, FIRST, 4);
+    List<LocalDate> expected = Arrays.asList(LocalDate.of(2020, 1, 6), LocalDate.of(2020, 1, 10),
+        LocalDate.of(2020, 1, 20), LocalDate.of(2020, 1, 24));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void weeklyOnFirstDayByDefault() {
+    Recurrence recurrence = Recurrence.weekly(UTC, Collections.emptySet());
+
+    List<LocalDate> actual = getDates(recurrence, FIRST, FIRST.plusDays(1), 2);
+    List<LocalDate> expected = Arrays.asList(LocalDate.of(2020, 1, 13), LocalDate.of(2020, 1, 20));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void exceptionsAndEnd() {
+    Recurrence recurrence =
+        Recurrence.daily(UTC).except(FIRST.plusDays(1)).until(FIRST.plusDays(3));
+
+    List<LocalDate> actual = getDates(recurrence, FIRST, FIRST, 10);
+    List<LocalDate> expected =
+        Arrays.asList(FIRST, LocalDate.of(2020, 1, 8), LocalDate.of(2020, 1, 9));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void nothingBeforeFirstOccurrence() {
+    Recurrence recurrence = Recurrence.daily(UTC);
+
+    Assert.assertEquals(FIRST, recurrence.nextDate(FIRST, FIRST.minusDays(30)));
+  }
+
+  /** Returns up to {@code count} occurrence dates from {@code date} on. */
+  private static List<LocalDate> getDates(
+      Recurrence recurrence, LocalDate first, LocalDate date, int count) {
+    List<LocalDate> dates = new ArrayList<>();
+    for (LocalDate next = recurrence.nextDate(first, date); next != null && dates.size() < count;
+        next = recurrence.nextDate(first, next.plusDays(1))) {
+      dates.add(next);
+    }
+    return dates;
+  }
+}